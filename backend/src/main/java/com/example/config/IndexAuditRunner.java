@@ -0,0 +1,157 @@
+package com.example.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.example.service.QueryCatalog;
+
+// Startup audit of every query shape the repositories and services issue. Each shape is
+// explained (queryPlanner verbosity, so nothing is executed) and startup fails if the
+// winning plan contains a COLLSCAN, i.e. a finder was added or changed without an index.
+// Service queries come from QueryCatalog, which calls the services' own query builders,
+// so the audit cannot drift from them; repository finders are listed here by hand.
+// Shapes known to scan (startup backfills, the friend graph load) are logged instead.
+// Off by default; enable with mongo.index-audit.enabled=true against a local database.
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "mongo.index-audit.enabled", havingValue = "true")
+public class IndexAuditRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexAuditRunner.class);
+
+    // Placeholder values: only the shape of the filter matters to the planner
+    private static final String ID = new ObjectId().toHexString();
+    private static final String OTHER_ID = new ObjectId().toHexString();
+
+    private final MongoTemplate mongoTemplate;
+    private final QueryMapper queryMapper;
+
+    public IndexAuditRunner(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<QueryShape> shapes = shapes();
+        List<String> failures = new ArrayList<>();
+        for (QueryShape shape : shapes) {
+            Document find = new Document("find", shape.collection())
+                .append("filter", shape.filter())
+                .append("sort", shape.sort());
+            if (shape.hint() != null) {
+                find.append("hint", shape.hint());
+            }
+            Document explain = mongoTemplate.getDb().runCommand(new Document("explain", find)
+                .append("verbosity", "queryPlanner"));
+
+            Object winningPlan = ((Document) explain.get("queryPlanner")).get("winningPlan");
+            if (!containsStage(winningPlan, "COLLSCAN")) {
+                continue;
+            }
+            if (shape.fullScanReason() != null) {
+                log.info("index audit shape={} collection={} outcome=full_scan reason=\"{}\"",
+                    shape.name(), shape.collection(), shape.fullScanReason());
+            } else {
+                failures.add(shape.name() + " on " + shape.collection() + " " + shape.filter().toJson());
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Queries without a supporting index: " + failures);
+        }
+        log.info("index audit passed shapes={}", shapes.size());
+    }
+
+    List<QueryShape> shapes() {
+        List<QueryShape> shapes = new ArrayList<>(repositoryShapes());
+        for (QueryCatalog.Entry entry : QueryCatalog.entries(ID, OTHER_ID)) {
+            shapes.add(shapeOf(entry));
+        }
+        return shapes;
+    }
+
+    // The filter, sort and hint the driver would send for the entry's query
+    private QueryShape shapeOf(QueryCatalog.Entry entry) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+            .getPersistentEntity(entry.entityClass());
+        Query query = entry.query();
+        return new QueryShape(entry.name(), mongoTemplate.getCollectionName(entry.entityClass()),
+            queryMapper.getMappedObject(query.getQueryObject(), entity),
+            queryMapper.getMappedSort(query.getSortObject(), entity),
+            query.getHint(), entry.fullScanReason());
+    }
+
+    // Derived and @Query finders, whose filters Spring Data builds from the method names
+    private static List<QueryShape> repositoryShapes() {
+        return List.of(
+            // UserRepository
+            new QueryShape("findByEmail", "users", new Document("email", "a@b.c")),
+            new QueryShape("findByUsername", "users", new Document("username", "a")),
+
+            // FriendRequestRepository
+            new QueryShape("findBySenderIdAndReceiverId", "friend_requests",
+                new Document("senderId", ID).append("receiverId", OTHER_ID)),
+            new QueryShape("findByReceiverIdAndStatus", "friend_requests",
+                new Document("receiverId", ID).append("status", "PENDING")),
+            new QueryShape("findByStatusForUser", "friend_requests",
+                new Document("status", "PENDING").append("$or", List.of(
+                    new Document("senderId", ID), new Document("receiverId", ID)))),
+            new QueryShape("findByRequestToken", "friend_requests", new Document("requestToken", "t")),
+
+            // GroupRepository
+            new QueryShape("findByMemberIdsContaining", "groups",
+                new Document("memberIds", ID), new Document("lastMessageAt", -1)),
+
+            // MessageRepository
+            new QueryShape("findByConversationIdOrderByTimestampDesc", "messages",
+                new Document("conversationId", ID), new Document("timestamp", -1))
+        );
+    }
+
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Map<?, ?> map) {
+            if (stage.equals(map.get("stage"))) {
+                return true;
+            }
+            for (Object value : map.values()) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        } else if (plan instanceof List<?> list) {
+            for (Object value : list) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    record QueryShape(String name, String collection, Document filter, Document sort,
+                              String hint, String fullScanReason) {
+        QueryShape(String name, String collection, Document filter) {
+            this(name, collection, filter, new Document());
+        }
+
+        QueryShape(String name, String collection, Document filter, Document sort) {
+            this(name, collection, filter, sort, null, null);
+        }
+    }
+}
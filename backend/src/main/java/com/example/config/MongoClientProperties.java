@@ -0,0 +1,49 @@
+package com.example.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Settings for the client built in MongoConfig (mongo.client.*). Explicit values here
+// override the same options given in the connection string.
+@ConfigurationProperties(prefix = "mongo.client")
+public record MongoClientProperties(
+    @DefaultValue("mongodb://localhost:27017") String uri,
+    @DefaultValue("howudoinDb") String database,
+    @DefaultValue Pool pool,
+    @DefaultValue Timeouts timeouts,
+    // Offered to the server in order; it picks the first one it supports
+    @DefaultValue({"zstd", "snappy", "zlib"}) List<String> compressors,
+    // For everything except the reads routed through MongoConfig.SECONDARY_READS
+    @DefaultValue("primary") String readPreference,
+    @DefaultValue SecondaryReads secondaryReads
+) {
+
+    public record Pool(
+        @DefaultValue("100") int maxSize,
+        @DefaultValue("10") int minSize,
+        // Connections being opened at once; the rest of the burst waits for these
+        @DefaultValue("4") int maxConnecting,
+        // How long a request may wait for a connection before failing fast
+        @DefaultValue("2s") Duration maxWaitTime,
+        @DefaultValue("5m") Duration maxConnectionIdleTime
+    ) {
+    }
+
+    public record Timeouts(
+        @DefaultValue("5s") Duration connect,
+        @DefaultValue("10s") Duration read,
+        @DefaultValue("5s") Duration serverSelection
+    ) {
+    }
+
+    // Read-only endpoints that tolerate replication lag (history pages, conversation lists)
+    public record SecondaryReads(
+        @DefaultValue("secondaryPreferred") String readPreference,
+        // Secondaries further behind than this are not used; the driver's minimum is 90s
+        @DefaultValue("90s") Duration maxStaleness
+    ) {
+    }
+}
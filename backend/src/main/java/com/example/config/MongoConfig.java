@@ -2,27 +2,140 @@ package com.example.config;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
 @Configuration
-@EnableMongoRepositories(basePackages = "com.example.repository")
+// The reactive repositories are registered by ReactiveMongoConfig instead
+@EnableMongoRepositories(basePackages = "com.example.repository",
+    excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.example\\.repository\\.reactive\\..*"))
+@EnableConfigurationProperties(MongoClientProperties.class)
 public class MongoConfig extends AbstractMongoClientConfiguration {
 
+    // Template for read-only endpoints that may be served by a secondary; inject it with
+    // @Qualifier(MongoConfig.SECONDARY_READS). Everything else uses the primary template.
+    public static final String SECONDARY_READS = "secondaryReadsMongoTemplate";
+
+    private final MeterRegistry meterRegistry;
+    private final MongoClientProperties properties;
+
+    public MongoConfig(MeterRegistry meterRegistry, MongoClientProperties properties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+    }
+
     @Override
     protected String getDatabaseName() {
-        return "howudoinDb";
+        return properties.database();
+    }
+
+    // AbstractMongoClientConfiguration ignores spring.data.mongodb.auto-index-creation,
+    // so the @Indexed/@CompoundIndex definitions on the models need this to be applied
+    @Override
+    protected boolean autoIndexCreation() {
+        return true;
+    }
+
+    // Scan the models up front so every collection's indexes exist at startup, including
+    // documents only reached through MongoTemplate (e.g. MessageBucket) rather than a repository
+    @Override
+    protected Collection<String> getMappingBasePackages() {
+        return List.of("com.example.model");
     }
 
+    // The client is built here rather than by Boot's auto-configuration, so the command
+    // timer (mongodb.driver.commands, tagged by command and collection) and the pool
+    // metrics are registered here too
     @Override
     public MongoClient mongoClient() {
-            ConnectionString connectionString = new ConnectionString(System.getenv("MONGODB_URI"));        MongoClientSettings mongoClientSettings = MongoClientSettings.builder()
-            .applyConnectionString(connectionString)
+        return MongoClients.create(clientSettings(properties, meterRegistry));
+    }
+
+    // Shared with the reactive client in ReactiveMongoConfig so both use the same pool,
+    // timeouts, compression and metrics
+    static MongoClientSettings clientSettings(MongoClientProperties properties, MeterRegistry meterRegistry) {
+        MongoClientProperties.Pool pool = properties.pool();
+        MongoClientProperties.Timeouts timeouts = properties.timeouts();
+
+        return MongoClientSettings.builder()
+            .applyConnectionString(new ConnectionString(properties.uri()))
+            .applyToConnectionPoolSettings(builder -> builder
+                .maxSize(pool.maxSize())
+                .minSize(pool.minSize())
+                .maxConnecting(pool.maxConnecting())
+                .maxWaitTime(pool.maxWaitTime().toMillis(), TimeUnit.MILLISECONDS)
+                .maxConnectionIdleTime(pool.maxConnectionIdleTime().toMillis(), TimeUnit.MILLISECONDS)
+                .addConnectionPoolListener(new MongoMetricsConnectionPoolListener(meterRegistry))
+                .addConnectionPoolListener(new MongoPoolMetrics(meterRegistry)))
+            .applyToSocketSettings(builder -> builder
+                .connectTimeout((int) timeouts.connect().toMillis(), TimeUnit.MILLISECONDS)
+                .readTimeout((int) timeouts.read().toMillis(), TimeUnit.MILLISECONDS))
+            .applyToClusterSettings(builder -> builder
+                .serverSelectionTimeout(timeouts.serverSelection().toMillis(), TimeUnit.MILLISECONDS))
+            .compressorList(compressors(properties.compressors()))
+            .readPreference(readPreference(properties.readPreference(), null))
+            .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
             .build();
-        return MongoClients.create(mongoClientSettings);
     }
-}
\ No newline at end of file
+
+    @Bean
+    @Primary
+    @Override
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory databaseFactory, MappingMongoConverter converter) {
+        return super.mongoTemplate(databaseFactory, converter);
+    }
+
+    @Bean(SECONDARY_READS)
+    public MongoTemplate secondaryReadsMongoTemplate(MongoDatabaseFactory databaseFactory,
+                                                     MappingMongoConverter converter) {
+        MongoClientProperties.SecondaryReads secondaryReads = properties.secondaryReads();
+        MongoTemplate template = new MongoTemplate(databaseFactory, converter);
+        template.setReadPreference(readPreference(secondaryReads.readPreference(), secondaryReads.maxStaleness()));
+        return template;
+    }
+
+    private static List<MongoCompressor> compressors(List<String> names) {
+        return names.stream()
+            .map(name -> switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "zstd" -> MongoCompressor.createZstdCompressor();
+                case "snappy" -> MongoCompressor.createSnappyCompressor();
+                case "zlib" -> MongoCompressor.createZlibCompressor();
+                default -> throw new IllegalStateException("Unknown Mongo compressor: " + name);
+            })
+            .collect(Collectors.toList());
+    }
+
+    // maxStaleness only applies to modes that may read from secondaries
+    static ReadPreference readPreference(String mode, Duration maxStaleness) {
+        if ("primary".equalsIgnoreCase(mode)) {
+            return ReadPreference.primary();
+        }
+        if (maxStaleness == null) {
+            return ReadPreference.valueOf(mode);
+        }
+        return ReadPreference.valueOf(mode, List.of(), maxStaleness.toSeconds(), TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.config;
+
+import java.util.concurrent.TimeUnit;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Times how long each operation waited for a pooled connection (mongodb.driver.pool.checkout,
+// tagged by outcome). Pool size, checked-out count and wait-queue depth come from
+// Micrometer's MongoMetricsConnectionPoolListener, registered alongside this one.
+public class MongoPoolMetrics implements ConnectionPoolListener {
+
+    private static final String CHECKOUT_TIMER = "mongodb.driver.pool.checkout";
+
+    private final MeterRegistry meterRegistry;
+    private final Timer checkedOut;
+
+    public MongoPoolMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.checkedOut = Timer.builder(CHECKOUT_TIMER).tag("outcome", "success").register(meterRegistry);
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkedOut.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    // TIMEOUT here means the pool was exhausted for longer than mongo.client.pool.max-wait-time
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        Timer.builder(CHECKOUT_TIMER)
+            .tag("outcome", event.getReason().name().toLowerCase())
+            .register(meterRegistry)
+            .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+}
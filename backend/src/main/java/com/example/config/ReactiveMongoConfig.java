@@ -0,0 +1,56 @@
+package com.example.config;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+// Reactive driver for the "reactive" profile. It is a second client next to the blocking
+// one from MongoConfig, built from the same settings and sharing its converter, so both
+// map documents and create indexes identically.
+@Configuration
+@Profile("reactive")
+@EnableReactiveMongoRepositories(basePackages = "com.example.repository.reactive")
+public class ReactiveMongoConfig {
+
+    // Reactive counterpart of MongoConfig.SECONDARY_READS
+    public static final String SECONDARY_READS = "secondaryReadsReactiveMongoTemplate";
+
+    @Bean
+    public MongoClient reactiveMongoClient(MongoClientProperties properties, MeterRegistry meterRegistry) {
+        return MongoClients.create(MongoConfig.clientSettings(properties, meterRegistry));
+    }
+
+    @Bean
+    public ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory(MongoClient reactiveMongoClient,
+                                                                     MongoClientProperties properties) {
+        return new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, properties.database());
+    }
+
+    @Bean
+    @Primary
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory databaseFactory,
+                                                       MappingMongoConverter converter) {
+        return new ReactiveMongoTemplate(databaseFactory, converter);
+    }
+
+    @Bean(SECONDARY_READS)
+    public ReactiveMongoTemplate secondaryReadsReactiveMongoTemplate(ReactiveMongoDatabaseFactory databaseFactory,
+                                                                     MappingMongoConverter converter,
+                                                                     MongoClientProperties properties) {
+        MongoClientProperties.SecondaryReads secondaryReads = properties.secondaryReads();
+        ReactiveMongoTemplate template = new ReactiveMongoTemplate(databaseFactory, converter);
+        template.setReadPreference(MongoConfig.readPreference(secondaryReads.readPreference(), secondaryReads.maxStaleness()));
+        return template;
+    }
+}
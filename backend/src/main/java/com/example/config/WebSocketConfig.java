@@ -0,0 +1,54 @@
+package com.example.config;
+
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import com.example.controller.RealtimeWebSocketHandler;
+import com.example.security.AuthenticatedUser;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final RealtimeWebSocketHandler realtimeWebSocketHandler;
+
+    public WebSocketConfig(RealtimeWebSocketHandler realtimeWebSocketHandler) {
+        this.realtimeWebSocketHandler = realtimeWebSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(realtimeWebSocketHandler, "/ws")
+                .addInterceptors(new AuthenticatedUserHandshakeInterceptor())
+                .setAllowedOrigins("*");
+    }
+
+    // Carries the caller authenticated by JwtAuthenticationFilter over to the WebSocket session
+    private static class AuthenticatedUserHandshakeInterceptor implements HandshakeInterceptor {
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                Object caller = servletRequest.getServletRequest().getAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE);
+                if (caller != null) {
+                    attributes.put(AuthenticatedUser.REQUEST_ATTRIBUTE, caller);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
+    }
+}
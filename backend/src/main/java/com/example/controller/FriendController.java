@@ -3,14 +3,24 @@ package com.example.controller;
 import com.example.model.FriendRequest;
 import com.example.model.User;
 import com.example.repository.FriendRequestRepository;
-import com.example.repository.UserRepository;
+import com.example.security.AuthenticatedUser;
 import com.example.security.FriendTokenUtil;
+import com.example.service.FriendGraph;
+import com.example.service.FriendshipService;
+import com.example.service.ParallelLookups;
+import com.example.service.UserLookupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.Objects;
 
@@ -19,53 +29,77 @@ import java.util.Objects;
 @RequestMapping("/friends")
 public class FriendController {
 
-    private final UserRepository userRepository;
+    private static final Logger log = LoggerFactory.getLogger(FriendController.class);
+
+    private static final int DEFAULT_SUGGESTIONS = 20;
+    private static final int MAX_SUGGESTIONS = 100;
+
     private final FriendRequestRepository friendRequestRepository;
     private final FriendTokenUtil friendTokenUtil;
+    private final UserLookupService userLookupService;
+    private final FriendshipService friendshipService;
+    private final ParallelLookups parallelLookups;
+    private final FriendGraph friendGraph;
 
     public FriendController(
-        UserRepository userRepository,
         FriendRequestRepository friendRequestRepository,
-        FriendTokenUtil friendTokenUtil
+        FriendTokenUtil friendTokenUtil,
+        UserLookupService userLookupService,
+        FriendshipService friendshipService,
+        ParallelLookups parallelLookups,
+        FriendGraph friendGraph
     ) {
-        this.userRepository = userRepository;
         this.friendRequestRepository = friendRequestRepository;
         this.friendTokenUtil = friendTokenUtil;
+        this.userLookupService = userLookupService;
+        this.friendshipService = friendshipService;
+        this.parallelLookups = parallelLookups;
+        this.friendGraph = friendGraph;
     }
 
     @PostMapping("/add")
     @CrossOrigin
-    public ResponseEntity<?> sendFriendRequest(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> sendFriendRequest(@RequestBody Map<String, String> request,
+                                               @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                               AuthenticatedUser caller) {
         try {
             String senderId = request.get("senderId");
             String receiverId = request.get("receiverId");
-            
-            System.out.println("Received friend request: senderId=" + senderId + ", receiverId=" + receiverId);
 
             if (senderId == null || receiverId == null) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "senderId and receiverId are required"));
             }
 
-            // Check if users exist
-            Optional<User> sender = userRepository.findById(senderId);
-            Optional<User> receiver = userRepository.findById(receiverId);
+            if (caller != null && !caller.is(senderId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "senderId does not match the authenticated user"));
+            }
+
+            // Both users and any existing request are looked up at once
+            Map<String, User> users;
+            List<FriendRequest> existingRequests;
+            try (ParallelLookups.Scope scope = parallelLookups.open()) {
+                Supplier<Map<String, User>> found = scope.fork(() -> userLookupService.findByIds(List.of(senderId, receiverId)));
+                Supplier<List<FriendRequest>> existing = scope.fork(() -> friendRequestRepository
+                    .findBySenderIdAndReceiverId(senderId, receiverId));
+                scope.join();
+                users = found.get();
+                existingRequests = existing.get();
+            }
 
-            if (sender.isEmpty() || receiver.isEmpty()) {
+            if (!users.containsKey(senderId) || !users.containsKey(receiverId)) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Invalid sender or receiver ID"));
             }
 
             // Check if they're already friends
-            if (sender.get().getFriendIds().contains(receiverId)) {
+            if (friendGraph.areFriends(senderId, receiverId)) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Users are already friends"));
             }
 
             // Check for existing pending request
-            List<FriendRequest> existingRequests = friendRequestRepository
-                .findBySenderIdAndReceiverId(senderId, receiverId);
-            
             if (!existingRequests.isEmpty()) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Friend request already sent"));
@@ -79,6 +113,10 @@ public class FriendController {
 
             return ResponseEntity.ok(Map.of("message", "Friend request sent successfully"));
 
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Server busy, please retry"));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Failed to send friend request: " + e.getMessage()));
@@ -87,60 +125,34 @@ public class FriendController {
 
     @PostMapping("/accept")
     @CrossOrigin
-    public ResponseEntity<?> acceptFriendRequest(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> acceptFriendRequest(@RequestBody Map<String, String> request,
+                                                 @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                 AuthenticatedUser caller) {
         try {
             String requestToken = request.get("requestToken");
             String userId = request.get("userId");
-            
-            System.out.println("Accepting friend request: token=" + requestToken + ", userId=" + userId);
 
             if (requestToken == null || userId == null) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "requestToken and userId are required"));
             }
 
-            Optional<FriendRequest> friendRequest = friendRequestRepository.findByRequestToken(requestToken);
-            
-            if (friendRequest.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Friend request not found"));
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot accept requests for another user"));
             }
 
-            FriendRequest fr = friendRequest.get();
-            
-            // Verify request hasn't been processed
-            if (!"PENDING".equals(fr.getStatus())) {
+            // Claim the request and add both sides with $addToSet; see FriendshipService
+            FriendshipService.AcceptResult result = friendshipService.accept(requestToken, userId);
+            if (result == FriendshipService.AcceptResult.NOT_FOUND) {
                 return ResponseEntity.badRequest()
-                    .body(Map.of("message", "Request already processed"));
+                    .body(Map.of("error", "Friend request not found"));
             }
-
-            // Add users as friends
-            Optional<User> receiver = userRepository.findById(userId);
-            Optional<User> sender = userRepository.findById(fr.getSenderId());
-
-            if (receiver.isEmpty() || sender.isEmpty()) {
+            if (result == FriendshipService.AcceptResult.ALREADY_PROCESSED) {
                 return ResponseEntity.badRequest()
-                    .body(Map.of("error", "User not found"));
-            }
-
-            User receiverUser = receiver.get();
-            User senderUser = sender.get();
-
-            // Add to friends lists
-            if (!receiverUser.getFriendIds().contains(senderUser.getId())) {
-                receiverUser.getFriendIds().add(senderUser.getId());
-            }
-            if (!senderUser.getFriendIds().contains(receiverUser.getId())) {
-                senderUser.getFriendIds().add(receiverUser.getId());
+                    .body(Map.of("message", "Request already processed"));
             }
 
-            // Save users with updated friend lists
-            userRepository.save(receiverUser);
-            userRepository.save(senderUser);
-
-            // Delete only the friend request
-            friendRequestRepository.deleteById(fr.getId());
-
             return ResponseEntity.ok(Map.of(
                 "message", "Friend request accepted",
                 "requestToken", requestToken  // Return the token so frontend knows which request was processed
@@ -154,11 +166,11 @@ public class FriendController {
 
     @PostMapping("/reject")
     @CrossOrigin
-    public ResponseEntity<?> rejectFriendRequest(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> rejectFriendRequest(@RequestBody Map<String, String> request,
+                                                 @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                 AuthenticatedUser caller) {
         try {
             String requestToken = request.get("requestToken");
-            
-            System.out.println("Rejecting friend request: token=" + requestToken);
 
             if (requestToken == null) {
                 return ResponseEntity.badRequest()
@@ -172,17 +184,18 @@ public class FriendController {
                     .body(Map.of("error", "Friend request not found"));
             }
 
-            FriendRequest fr = friendRequest.get();
-            
-            // Verify request hasn't been processed
-            if (!"PENDING".equals(fr.getStatus())) {
+            // Only the receiver may reject a request
+            if (caller != null && !caller.is(friendRequest.get().getReceiverId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot reject requests for another user"));
+            }
+
+            // Delete only while still pending, so a concurrent accept is never undone
+            if (!friendshipService.reject(requestToken)) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("message", "Request already processed"));
             }
 
-            // Delete only the friend request
-            friendRequestRepository.deleteById(fr.getId());
-
             return ResponseEntity.ok(Map.of(
                 "message", "Friend request rejected",
                 "requestToken", requestToken  // Return the token so frontend knows which request was processed
@@ -194,56 +207,170 @@ public class FriendController {
         }
     }
 
+    @PostMapping("/remove")
+    @CrossOrigin
+    public ResponseEntity<?> removeFriend(@RequestBody Map<String, String> request,
+                                          @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                          AuthenticatedUser caller) {
+        try {
+            String userId = request.get("userId");
+            String friendId = request.get("friendId");
+
+            if (userId == null || friendId == null) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "userId and friendId are required"));
+            }
+
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot remove friends for another user"));
+            }
+
+            friendshipService.remove(userId, friendId);
+
+            return ResponseEntity.ok(Map.of("message", "Friend removed"));
+        } catch (RejectedExecutionException e) {
+            // The removal is recorded and will be completed; retrying is safe
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Server busy, please retry"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping
     @CrossOrigin
-    public ResponseEntity<?> getFriendList(@RequestParam String userId) {
+    public ResponseEntity<?> getFriendList(@RequestParam String userId,
+                                           @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                           AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "Cannot list another user's friends"));
+        }
+        try {
+            List<String> friendIds = friendGraph.friendIds(userId);
+            if (friendIds.isEmpty() && !userLookupService.exists(userId)) {
+                throw new RuntimeException("User not found");
+            }
+
+            return ResponseEntity.ok(Map.of("friends", profiles(friendIds)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/check")
+    @CrossOrigin
+    public ResponseEntity<?> areFriends(@RequestParam String userId, @RequestParam String otherUserId,
+                                        @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                        AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "userId does not match the authenticated user"));
+        }
         try {
-            User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-            List<Map<String, String>> friends = user.getFriendIds().stream()
-                .map(friendId -> userRepository.findById(friendId))
-                .filter(Optional::isPresent)
-                .map(friend -> Map.of(
-                    "id", friend.get().getId(),
-                    "username", friend.get().getUsername(),
-                    "email", friend.get().getEmail()
-                ))
+            return ResponseEntity.ok(Map.of("friends", friendGraph.areFriends(userId, otherUserId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/mutual")
+    @CrossOrigin
+    public ResponseEntity<?> getMutualFriends(@RequestParam String userId, @RequestParam String otherUserId,
+                                              @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                              AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "userId does not match the authenticated user"));
+        }
+        try {
+            return ResponseEntity.ok(Map.of("mutualFriends", profiles(friendGraph.mutualFriends(userId, otherUserId))));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Friends of friends, ranked by how many friends they share with the user
+    @GetMapping("/suggestions")
+    @CrossOrigin
+    public ResponseEntity<?> getSuggestions(@RequestParam String userId,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                            AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "Cannot read another user's suggestions"));
+        }
+        try {
+            int size = limit != null && limit > 0 ? Math.min(limit, MAX_SUGGESTIONS) : DEFAULT_SUGGESTIONS;
+            List<FriendGraph.Suggestion> suggestions = friendGraph.suggestions(userId, size);
+
+            Map<String, User> users = userLookupService.findByIds(suggestions.stream()
+                .map(FriendGraph.Suggestion::userId)
+                .collect(Collectors.toList()));
+            List<Map<String, Object>> response = suggestions.stream()
+                .filter(suggestion -> users.containsKey(suggestion.userId()))
+                .map(suggestion -> {
+                    User user = users.get(suggestion.userId());
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("id", user.getId());
+                    entry.put("username", user.getUsername());
+                    entry.put("firstName", user.getFirstName());
+                    entry.put("lastName", user.getLastName());
+                    entry.put("mutualCount", suggestion.mutualCount());
+                    return entry;
+                })
                 .collect(Collectors.toList());
 
-            return ResponseEntity.ok(Map.of("friends", friends));
+            return ResponseEntity.ok(Map.of("suggestions", response));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
+    // Friend summaries resolved in one batched lookup, in the order of `friendIds`
+    private List<Map<String, String>> profiles(List<String> friendIds) {
+        Map<String, User> users = userLookupService.findByIds(friendIds);
+        return friendIds.stream()
+            .map(users::get)
+            .filter(Objects::nonNull)
+            .map(friend -> Map.of(
+                "id", friend.getId(),
+                "username", friend.getUsername(),
+                "email", friend.getEmail()
+            ))
+            .collect(Collectors.toList());
+    }
+
     @GetMapping("/pending")
     @CrossOrigin
-    public ResponseEntity<?> getPendingRequests(@RequestParam String userId) {
+    public ResponseEntity<?> getPendingRequests(@RequestParam String userId,
+                                                @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "Cannot read another user's pending requests"));
+        }
         try {
-            System.out.println("Received request for pending friends. UserId: " + userId);
-            
-            // Log the user lookup attempt
-            Optional<User> userOptional = userRepository.findById(userId);
-            System.out.println("User found: " + userOptional.isPresent());
-            
+            Optional<User> userOptional = userLookupService.findById(userId);
             if (userOptional.isEmpty()) {
-                String error = "User not found with ID: " + userId;
-                System.err.println(error);
-                return ResponseEntity.badRequest().body(Map.of("error", error));
+                return ResponseEntity.badRequest().body(Map.of("error", "User not found with ID: " + userId));
             }
 
-            // Log the friend requests lookup
             List<FriendRequest> pendingRequests = friendRequestRepository
-                .findByStatusAndSenderIdOrReceiverId("PENDING", userId, userId);
-            System.out.println("Found " + pendingRequests.size() + " pending requests");
-            
-            // Log each request for debugging
-            pendingRequests.forEach(request -> 
-                System.out.println("Request: " + request.getId() + 
-                                 " from: " + request.getSenderId() + 
-                                 " to: " + request.getReceiverId()));
+                .findByStatusForUser("PENDING", userId);
+
+            // Resolve the other side of every request in one lookup
+            Map<String, User> otherUsers = userLookupService.findByIds(pendingRequests.stream()
+                .map(request -> request.getSenderId().equals(userId) ? request.getReceiverId() : request.getSenderId())
+                .collect(Collectors.toList()));
 
             // Create the response
             Map<String, Object> response = Map.of("requests", 
@@ -251,10 +378,10 @@ public class FriendController {
                     .map(request -> {
                         boolean isUserSender = request.getSenderId().equals(userId);
                         String otherUserId = isUserSender ? request.getReceiverId() : request.getSenderId();
-                        User otherUser = userRepository.findById(otherUserId).orElse(null);
+                        User otherUser = otherUsers.get(otherUserId);
                         
                         if (otherUser == null) {
-                            System.err.println("Could not find other user with ID: " + otherUserId);
+                            log.warn("friends.pending missing_user={} requestId={}", otherUserId, request.getId());
                             return null;
                         }
                         
@@ -273,13 +400,11 @@ public class FriendController {
                     .filter(Objects::nonNull)
                     .collect(Collectors.toList())
             );
-            
-            System.out.println("Sending response: " + response);
+
             return ResponseEntity.ok(response);
-            
+
         } catch (Exception e) {
-            System.err.println("Error processing request: " + e.getMessage());
-            e.printStackTrace();
+            log.error("friends.pending outcome=error userId={}", userId, e);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Error processing request: " + e.getMessage()));
         }
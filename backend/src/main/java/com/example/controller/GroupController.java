@@ -1,213 +1,122 @@
 package com.example.controller;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.dto.MessageDto;
 import com.example.model.Group;
 import com.example.model.User;
 import com.example.repository.GroupRepository;
-import com.example.repository.UserRepository;
+import com.example.security.AuthenticatedUser;
 import com.example.security.EncryptionUtil;
-
+import com.example.service.GroupFanoutService;
+import com.example.service.GroupMessageStore;
+import com.example.service.GroupReceiptService;
+import com.example.service.InboxService;
+import com.example.service.MessageCursor;
+import com.example.service.MessageStatus;
+import com.example.service.UserLookupService;
+
+// Blocking send, history and list endpoints; ReactiveGroupController serves the same paths
+// under the "reactive" profile
 @RestController
 @RequestMapping("/groups")
+@Profile("!reactive")
 public class GroupController {
 
     @Autowired
     private GroupRepository groupRepository;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private EncryptionUtil encryptionUtil;
 
-    @PostMapping("/create")
-    public ResponseEntity<?> createGroup(@RequestBody Map<String, Object> request) {
-        try {
-            String creatorId = (String) request.get("creatorId");
-            String groupName = (String) request.get("name");
-            
-            // Add type check before casting
-            Object memberIdsObj = request.get("memberIds");
-            if (!(memberIdsObj instanceof List<?>)) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Invalid memberIds format"));
-            }
-            @SuppressWarnings("unchecked")
-            List<String> memberIds = (List<String>) memberIdsObj;
-
-            // Validate creator exists
-            Optional<User> creator = userRepository.findById(creatorId);
-            if (creator.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Creator not found"));
-            }
-
-            // Validate all members exist
-            for (String memberId : memberIds) {
-                if (userRepository.findById(memberId).isEmpty()) {
-                    return ResponseEntity.badRequest()
-                        .body(Map.of("error", "Invalid member ID: " + memberId));
-                }
-            }
-
-            // Create new group
-            Group group = new Group();
-            group.setName(groupName);
-            group.setCreatorId(creatorId);
-            group.setMemberIds(new ArrayList<>(memberIds));
-            if (!group.getMemberIds().contains(creatorId)) {
-                group.getMemberIds().add(creatorId);
-            }
-
-            group = groupRepository.save(group);
-
-            return ResponseEntity.ok(Map.of(
-                "message", "Group created successfully",
-                "groupId", group.getGroupId()
-            ));
-
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", e.getMessage()));
-        }
-    }
-
-    @PostMapping("/{groupId}/add-member")
-    public ResponseEntity<?> addMember(@PathVariable String groupId, 
-                                     @RequestBody Map<String, List<String>> request) {
-        try {
-            List<String> newMemberIds = request.get("memberIds");
-            if (newMemberIds == null || newMemberIds.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "No member IDs provided"));
-            }
-
-            // Validate group exists
-            Optional<Group> groupOpt = groupRepository.findById(groupId);
-            if (groupOpt.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Group not found"));
-            }
-
-            Group group = groupOpt.get();
-            boolean anyNewMembersAdded = false;
+    @Autowired
+    private GroupMessageStore groupMessageStore;
 
-            // Validate and add each new member
-            for (String newMemberId : newMemberIds) {
-                // Validate new member exists
-                if (userRepository.findById(newMemberId).isEmpty()) {
-                    continue; // Skip invalid users
-                }
+    @Autowired
+    private InboxService inboxService;
 
-                // Add member if not already in group
-                if (!group.getMemberIds().contains(newMemberId)) {
-                    group.getMemberIds().add(newMemberId);
-                    anyNewMembersAdded = true;
-                }
-            }
+    @Autowired
+    private GroupFanoutService groupFanoutService;
 
-            if (!anyNewMembersAdded) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "No new members were added"));
-            }
+    @Autowired
+    private GroupReceiptService groupReceiptService;
 
-            groupRepository.save(group);
-            return ResponseEntity.ok(Map.of(
-                "success", true,
-                "message", "Members added successfully"
-            ));
+    @Autowired
+    private UserLookupService userLookupService;
 
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", e.getMessage()));
-        }
-    }
+    @Autowired
+    private JsonStreamWriter jsonStreamWriter;
 
     @PostMapping("/{groupId}/send")
     public ResponseEntity<?> sendGroupMessage(@PathVariable String groupId, 
-                                            @RequestBody Map<String, String> request) {
+                                            @RequestBody Map<String, String> request,
+                                            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                            AuthenticatedUser caller) {
         try {
             String senderId = request.get("senderId");
             String messageText = request.get("text");
 
-            // Validate group exists
-            Optional<Group> groupOpt = groupRepository.findById(groupId);
-            if (groupOpt.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Group not found"));
-            }
-
-            Group group = groupOpt.get();
-
-            // Validate sender is a member
-            if (!group.getMemberIds().contains(senderId)) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Sender is not a member of this group"));
+            // Only the authenticated user may send as themselves
+            if (caller != null && !caller.is(senderId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "senderId does not match the authenticated user"));
             }
 
-            // Create and add new message
+            // Create the message; the append checks membership and claims its seq in one
+            // write on the group, without loading the group or its history
             Group.GroupMessage message = new Group.GroupMessage(
                 senderId,
                 encryptionUtil.encrypt(messageText),
                 LocalDateTime.now(),
-                "sent"
+                MessageStatus.SENT
             );
+            message.setId(new ObjectId().toHexString());
 
-            group.getMessages().add(message);
-            groupRepository.save(group);
-
-            return ResponseEntity.ok(Map.of("message", "Message sent successfully"));
-
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", e.getMessage()));
-        }
-    }
-
-    @GetMapping("/{groupId}/messages")
-    public ResponseEntity<?> getGroupMessages(@PathVariable String groupId) {
-        try {
-            Optional<Group> groupOpt = groupRepository.findById(groupId);
-            if (groupOpt.isEmpty()) {
+            Group group = groupMessageStore.append(groupId, message,
+                inboxService.groupMessageUpdate(messageText, message));
+            if (group == null) {
                 return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Group not found"));
+                    .body(Map.of("error", groupRepository.existsById(groupId)
+                        ? "Sender is not a member of this group"
+                        : "Group not found"));
             }
 
-            Group group = groupOpt.get();
-
-            List<Map<String, Object>> messages = group.getMessages().stream()
-                .map(msg -> {
-                    Map<String, Object> messageMap = new HashMap<>();
-                    messageMap.put("senderId", msg.getSenderId());
-                    messageMap.put("text", encryptionUtil.decrypt(msg.getText()));
-                    messageMap.put("timestamp", msg.getTimestamp().toString());
-                    messageMap.put("status", msg.getStatus());
-                    
-                    Optional<User> sender = userRepository.findById(msg.getSenderId());
-                    messageMap.put("senderUsername", sender.map(User::getUsername).orElse("Unknown User"));
-                    
-                    return messageMap;
-                })
-                .collect(Collectors.toList());
+            Map<String, Object> messageMap = new HashMap<>();
+            messageMap.put("id", message.getId());
+            messageMap.put("seq", message.getSeq());
+            messageMap.put("senderId", senderId);
+            messageMap.put("text", messageText);
+            messageMap.put("timestamp", message.getTimestamp().toString());
+            messageMap.put("status", message.getStatus());
+
+            // Realtime delivery and delivered watermarks are handled in batches off this thread
+            groupFanoutService.enqueue(groupId, group.getMemberIds(), senderId, message.getSeq(), Map.of(
+                "type", "groupMessage",
+                "groupId", groupId,
+                "message", messageMap
+            ));
 
-            return ResponseEntity.ok(Map.of("messages", messages));
+            return ResponseEntity.ok(Map.of("message", "Message sent successfully"));
 
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -215,40 +124,73 @@ public class GroupController {
         }
     }
 
-    @GetMapping("/{groupId}/members")
-    public ResponseEntity<?> getGroupMembers(@PathVariable String groupId) {
+    @GetMapping("/{groupId}/messages")
+    public ResponseEntity<StreamingResponseBody> getGroupMessages(@PathVariable String groupId,
+                                                                  @RequestParam(required = false) String before,
+                                                                  @RequestParam(required = false) String after,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                                  AuthenticatedUser caller) {
         try {
             Optional<Group> groupOpt = groupRepository.findById(groupId);
             if (groupOpt.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Group not found"));
+                return jsonStreamWriter.value(HttpStatus.BAD_REQUEST, Map.of("error", "Group not found"));
             }
-
-            Group group = groupOpt.get();
-            List<Map<String, String>> members = group.getMemberIds().stream()
-                .map(memberId -> userRepository.findById(memberId))
-                .filter(Optional::isPresent)
-                .map(member -> Map.of(
-                    "id", member.get().getId(),
-                    "username", member.get().getUsername(),
-                    "email", member.get().getEmail()
-                ))
-                .collect(Collectors.toList());
-
-            return ResponseEntity.ok(Map.of("members", members));
+            if (caller != null && !groupOpt.get().getMemberIds().contains(caller.getUserId())) {
+                return jsonStreamWriter.value(HttpStatus.FORBIDDEN, Map.of("error", "Not a member of this group"));
+            }
+            // A message is delivered/read once every member's watermark has reached it
+            GroupReceiptService.Watermark everyone = groupReceiptService.lowWatermark(groupOpt.get());
+
+            List<Group.GroupMessage> page = groupMessageStore.findPage(groupOpt.get(),
+                MessageCursor.parse(before), MessageCursor.parse(after), MessageCursor.pageSize(limit));
+
+            Map<String, User> senders = userLookupService.findByIds(page.stream()
+                .map(Group.GroupMessage::getSenderId)
+                .collect(Collectors.toList()));
+
+            List<String> texts = encryptionUtil.decryptAll(page.stream()
+                .map(Group.GroupMessage::getText)
+                .collect(Collectors.toList()));
+
+            // Write each message as it is converted rather than building the whole body first
+            return jsonStreamWriter.stream(json -> {
+                json.writeStartObject();
+                json.writeArrayFieldStart("messages");
+                for (int i = 0; i < page.size(); i++) {
+                    Group.GroupMessage msg = page.get(i);
+                    User sender = senders.get(msg.getSenderId());
+                    json.writeObject(new MessageDto(msg.getId(), msg.getSeq(), msg.getSenderId(),
+                        sender != null ? sender.getUsername() : "Unknown User",
+                        texts.get(i), msg.getTimestamp(),
+                        MessageStatus.of(msg.getSeq(), msg.getStatus(), everyone.deliveredSeq(), everyone.readSeq())));
+                }
+                json.writeEndArray();
+                if (!page.isEmpty()) {
+                    Group.GroupMessage oldest = page.get(0);
+                    Group.GroupMessage newest = page.get(page.size() - 1);
+                    json.writeStringField("nextBefore", MessageCursor.of(oldest.getTimestamp(), oldest.getId()).encode());
+                    json.writeStringField("nextAfter", MessageCursor.of(newest.getTimestamp(), newest.getId()).encode());
+                }
+                json.writeEndObject();
+            });
 
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", e.getMessage()));
+            return jsonStreamWriter.value(HttpStatus.BAD_REQUEST, Map.of("error", e.getMessage()));
         }
     }
 
     @GetMapping
-    public ResponseEntity<?> getUserGroups(@RequestParam String userId) {
+    public ResponseEntity<?> getUserGroups(@RequestParam String userId,
+                                           @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                           AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "Cannot list another user's groups"));
+        }
         try {
             // Validate user exists
-            Optional<User> user = userRepository.findById(userId);
-            if (user.isEmpty()) {
+            if (!userLookupService.exists(userId)) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "User not found"));
             }
@@ -275,29 +217,4 @@ public class GroupController {
                 .body(Map.of("error", e.getMessage()));
         }
     }
-
-    @GetMapping("/{groupId}")
-    public ResponseEntity<?> getGroupById(@PathVariable String groupId) {
-        try {
-            Optional<Group> groupOpt = groupRepository.findById(groupId);
-            if (groupOpt.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Group not found"));
-            }
-
-            Group group = groupOpt.get();
-            Map<String, Object> groupResponse = new HashMap<>();
-            groupResponse.put("groupId", group.getGroupId());
-            groupResponse.put("name", group.getName());
-            groupResponse.put("creatorId", group.getCreatorId());
-            groupResponse.put("memberIds", group.getMemberIds());
-            groupResponse.put("createdAt", group.getCreatedAt().toString());
-
-            return ResponseEntity.ok(groupResponse);
-
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", e.getMessage()));
-        }
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.example.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.model.Group;
+import com.example.model.User;
+import com.example.repository.GroupRepository;
+import com.example.security.AuthenticatedUser;
+import com.example.service.GroupMessageStore;
+import com.example.service.GroupReceiptService;
+import com.example.service.UserLookupService;
+
+// Group creation and membership, served the same way whether or not the "reactive"
+// profile is active
+@RestController
+@RequestMapping("/groups")
+public class GroupMembershipController {
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private GroupMessageStore groupMessageStore;
+
+    @Autowired
+    private UserLookupService userLookupService;
+
+    @Autowired
+    private GroupReceiptService groupReceiptService;
+
+    @PostMapping("/create")
+    public ResponseEntity<?> createGroup(@RequestBody Map<String, Object> request,
+                                         @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                         AuthenticatedUser caller) {
+        try {
+            String creatorId = (String) request.get("creatorId");
+            String groupName = (String) request.get("name");
+
+            if (caller != null && !caller.is(creatorId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "creatorId does not match the authenticated user"));
+            }
+            
+            // Add type check before casting
+            Object memberIdsObj = request.get("memberIds");
+            if (!(memberIdsObj instanceof List<?>)) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid memberIds format"));
+            }
+            @SuppressWarnings("unchecked")
+            List<String> memberIds = (List<String>) memberIdsObj;
+
+            // Validate creator and all members exist in one lookup
+            List<String> userIds = new ArrayList<>(memberIds);
+            userIds.add(creatorId);
+            Map<String, User> users = userLookupService.findByIds(userIds);
+
+            if (!users.containsKey(creatorId)) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Creator not found"));
+            }
+
+            for (String memberId : memberIds) {
+                if (!users.containsKey(memberId)) {
+                    return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid member ID: " + memberId));
+                }
+            }
+
+            // Create new group
+            Group group = new Group();
+            group.setName(groupName);
+            group.setCreatorId(creatorId);
+            group.setMemberIds(new ArrayList<>(memberIds));
+            if (!group.getMemberIds().contains(creatorId)) {
+                group.getMemberIds().add(creatorId);
+            }
+
+            group = groupRepository.save(group);
+
+            return ResponseEntity.ok(Map.of(
+                "message", "Group created successfully",
+                "groupId", group.getGroupId()
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{groupId}/add-member")
+    public ResponseEntity<?> addMember(@PathVariable String groupId, 
+                                     @RequestBody Map<String, List<String>> request,
+                                     @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                     AuthenticatedUser caller) {
+        try {
+            List<String> newMemberIds = request.get("memberIds");
+            if (newMemberIds == null || newMemberIds.isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "No member IDs provided"));
+            }
+
+            // Validate group exists
+            Optional<Group> groupOpt = groupRepository.findById(groupId);
+            if (groupOpt.isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Group not found"));
+            }
+            if (caller != null && !groupOpt.get().getMemberIds().contains(caller.getUserId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not a member of this group"));
+            }
+
+            Group group = groupOpt.get();
+
+            // Validate new members in one lookup, skipping invalid users and existing members
+            Map<String, User> users = userLookupService.findByIds(newMemberIds);
+            List<String> membersToAdd = newMemberIds.stream()
+                .distinct()
+                .filter(users::containsKey)
+                .filter(newMemberId -> !group.getMemberIds().contains(newMemberId))
+                .collect(Collectors.toList());
+
+            if (membersToAdd.isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "No new members were added"));
+            }
+
+            // $addToSet rather than saving the loaded group, which would drop messages sent meanwhile
+            long joinedAtSeq = groupMessageStore.addMembers(groupId, membersToAdd);
+            // New members start with the history before they joined delivered and read, so
+            // they neither count it as unread nor hold back the group's receipt watermark
+            if (joinedAtSeq > 0) {
+                groupReceiptService.advanceAll(membersToAdd.stream()
+                    .map(memberId -> new GroupReceiptService.Watermark(groupId, memberId, joinedAtSeq, joinedAtSeq))
+                    .collect(Collectors.toList()));
+            }
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "Members added successfully"
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{groupId}/members")
+    public ResponseEntity<?> getGroupMembers(@PathVariable String groupId,
+                                             @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                             AuthenticatedUser caller) {
+        try {
+            Optional<Group> groupOpt = groupRepository.findById(groupId);
+            if (groupOpt.isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Group not found"));
+            }
+            if (caller != null && !groupOpt.get().getMemberIds().contains(caller.getUserId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not a member of this group"));
+            }
+
+            Group group = groupOpt.get();
+            Map<String, User> users = userLookupService.findByIds(group.getMemberIds());
+            List<Map<String, String>> members = group.getMemberIds().stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(member -> Map.of(
+                    "id", member.getId(),
+                    "username", member.getUsername(),
+                    "email", member.getEmail()
+                ))
+                .collect(Collectors.toList());
+
+            return ResponseEntity.ok(Map.of("members", members));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{groupId}")
+    public ResponseEntity<?> getGroupById(@PathVariable String groupId,
+                                          @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                          AuthenticatedUser caller) {
+        try {
+            Optional<Group> groupOpt = groupRepository.findById(groupId);
+            if (groupOpt.isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Group not found"));
+            }
+            if (caller != null && !groupOpt.get().getMemberIds().contains(caller.getUserId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not a member of this group"));
+            }
+
+            Group group = groupOpt.get();
+            Map<String, Object> groupResponse = new HashMap<>();
+            groupResponse.put("groupId", group.getGroupId());
+            groupResponse.put("name", group.getName());
+            groupResponse.put("creatorId", group.getCreatorId());
+            groupResponse.put("memberIds", group.getMemberIds());
+            groupResponse.put("createdAt", group.getCreatedAt().toString());
+
+            return ResponseEntity.ok(groupResponse);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.security.AuthenticatedUser;
+import com.example.service.InboxService;
+import com.example.service.UserLookupService;
+
+@RestController
+@RequestMapping("/inbox")
+public class InboxController {
+
+    private final UserLookupService userLookupService;
+    private final InboxService inboxService;
+
+    public InboxController(UserLookupService userLookupService, InboxService inboxService) {
+        this.userLookupService = userLookupService;
+        this.inboxService = inboxService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getInbox(@RequestParam String userId,
+                                      @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                      AuthenticatedUser caller) {
+        try {
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot read another user's inbox"));
+            }
+
+            if (!userLookupService.exists(userId)) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "User not found"));
+            }
+
+            List<Map<String, Object>> entries = inboxService.getInbox(userId);
+            return ResponseEntity.ok(Map.of("inbox", entries));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "Failed to retrieve inbox: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/read")
+    public ResponseEntity<?> markRead(@RequestBody Map<String, String> request,
+                                      @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                      AuthenticatedUser caller) {
+        try {
+            String userId = request.get("userId");
+            String conversationId = request.get("conversationId");
+            String groupId = request.get("groupId");
+
+            if (userId == null || (conversationId == null) == (groupId == null)) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "userId and exactly one of conversationId or groupId are required"));
+            }
+
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot mark read for another user"));
+            }
+
+            boolean updated = conversationId != null
+                ? inboxService.markConversationRead(conversationId, userId)
+                : inboxService.markGroupRead(groupId, userId);
+
+            if (!updated) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Conversation or group not found for user"));
+            }
+
+            return ResponseEntity.ok(Map.of("message", "Marked as read"));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.controller;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Writes JSON responses to the socket as they are produced, so list endpoints hold one
+// element at a time instead of the whole body. Values written with writeObject go through
+// the application's ObjectMapper and serialize exactly as they would in a ResponseEntity.
+//
+// The status is on the wire before the body is done, so a failure part way cannot turn into
+// an error response. The document is then left unterminated and the exception rethrown,
+// which aborts the response: the client sees malformed JSON or a reset connection rather
+// than a well-formed but truncated 200.
+@Component
+public class JsonStreamWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonStreamWriter.class);
+
+    @FunctionalInterface
+    public interface Body {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    private final ObjectMapper objectMapper;
+
+    public JsonStreamWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public ResponseEntity<StreamingResponseBody> stream(Body body) {
+        return stream(HttpStatus.OK, body);
+    }
+
+    // Streamed endpoints have to return StreamingResponseBody for errors too
+    public ResponseEntity<StreamingResponseBody> value(HttpStatus status, Object value) {
+        return stream(status, json -> json.writeObject(value));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(HttpStatus status, Body body) {
+        StreamingResponseBody response = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Otherwise closing the generator after a failure would close every open
+                // array and object and make the partial body look complete
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                try {
+                    body.write(json);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("json.stream outcome=aborted status={}", status.value(), e);
+                    throw e;
+                }
+            }
+        };
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+}
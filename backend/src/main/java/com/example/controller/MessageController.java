@@ -1,196 +1,336 @@
 package com.example.controller;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.config.MongoConfig;
+import com.example.dto.MessageDto;
 import com.example.model.Conversation;
 import com.example.model.User;
 import com.example.repository.ConversationRepository;
-import com.example.repository.UserRepository;
+import com.example.security.AuthenticatedUser;
 import com.example.security.EncryptionUtil;
+import com.example.service.DirectConversationService;
+import com.example.service.FriendGraph;
+import com.example.service.InboxService;
+import com.example.service.MessageCursor;
+import com.example.service.MessageStatus;
+import com.example.service.MessageStore;
+import com.example.service.ParallelLookups;
+import com.example.service.RealtimeGateway;
+import com.example.service.UserLookupService;
+import com.fasterxml.jackson.core.JsonGenerator;
 
+// Blocking send and history endpoints; ReactiveMessageController serves the same paths
+// under the "reactive" profile
 @RestController
 @RequestMapping("/messages")
+@Profile("!reactive")
 public class MessageController {
 
-    private final UserRepository userRepository;
+    private static final Logger log = LoggerFactory.getLogger(MessageController.class);
+
+    private final UserLookupService userLookupService;
     private final ConversationRepository conversationRepository;
     private final EncryptionUtil encryptionUtil;
+    private final MessageStore messageStore;
+    private final InboxService inboxService;
+    private final RealtimeGateway realtimeGateway;
+    private final DirectConversationService directConversationService;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final ParallelLookups parallelLookups;
+    private final FriendGraph friendGraph;
+    // History endpoints read through this, so they may be served by a secondary
+    private final MongoTemplate readTemplate;
 
-    public MessageController(UserRepository userRepository, 
+    public MessageController(UserLookupService userLookupService, 
                            ConversationRepository conversationRepository, 
-                           EncryptionUtil encryptionUtil) {
-        this.userRepository = userRepository;
+                           EncryptionUtil encryptionUtil,
+                           MessageStore messageStore,
+                           InboxService inboxService,
+                           RealtimeGateway realtimeGateway,
+                           DirectConversationService directConversationService,
+                           JsonStreamWriter jsonStreamWriter,
+                           ParallelLookups parallelLookups,
+                           FriendGraph friendGraph,
+                           @Qualifier(MongoConfig.SECONDARY_READS) MongoTemplate readTemplate) {
+        this.userLookupService = userLookupService;
         this.conversationRepository = conversationRepository;
         this.encryptionUtil = encryptionUtil;
+        this.messageStore = messageStore;
+        this.inboxService = inboxService;
+        this.realtimeGateway = realtimeGateway;
+        this.directConversationService = directConversationService;
+        this.jsonStreamWriter = jsonStreamWriter;
+        this.parallelLookups = parallelLookups;
+        this.friendGraph = friendGraph;
+        this.readTemplate = readTemplate;
     }
 
     @PostMapping("/send")
-    public ResponseEntity<?> sendMessage(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> sendMessage(@RequestBody Map<String, String> request,
+                                         @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                         AuthenticatedUser caller) {
         try {
-            System.out.println("Received message request: " + request);
-
             String senderId = request.get("senderId");
             String receiverId = request.get("receiverId");
             String messageText = request.get("text");
             boolean isInitial = Boolean.parseBoolean(request.get("isInitial"));
 
-            // Validate users exist
-            var sender = userRepository.findById(senderId);
-            var receiver = userRepository.findById(receiverId);
+            // Only the authenticated user may send as themselves
+            if (caller != null && !caller.is(senderId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "senderId does not match the authenticated user"));
+            }
 
-            if (sender.isEmpty() || receiver.isEmpty()) {
+            boolean hasText = !isInitial && messageText != null && !messageText.trim().isEmpty();
+
+            // Validate users exist; the text is encrypted while they load
+            Map<String, User> users;
+            String encryptedText;
+            try (ParallelLookups.Scope scope = parallelLookups.open()) {
+                Supplier<Map<String, User>> found = scope.fork(() -> userLookupService.findByIds(List.of(senderId, receiverId)));
+                Supplier<String> encrypted = hasText ? scope.fork(() -> encryptionUtil.encrypt(messageText)) : () -> null;
+                scope.join();
+                users = found.get();
+                encryptedText = encrypted.get();
+            }
+
+            if (!users.containsKey(senderId) || !users.containsKey(receiverId)) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Invalid sender or receiver ID"));
             }
 
             // Check if users are friends
-            User senderUser = sender.get();
-            if (!senderUser.getFriendIds().contains(receiverId)) {
+            if (!friendGraph.areFriends(senderId, receiverId)) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Users must be friends to exchange messages"));
             }
 
-            // Find or create conversation
-            List<String> participants = Arrays.asList(senderId, receiverId);
-            Collections.sort(participants);
-
-            Optional<Conversation> existingConv = conversationRepository
-                .findByParticipantsContainingAll(participants);
-
+            List<String> participants = DirectConversationService.participants(senderId, receiverId);
             Conversation conversation;
-            if (existingConv.isEmpty()) {
-                conversation = new Conversation();
-                conversation.setParticipants(participants);
-                conversation.setMessages(new ArrayList<>());
-                System.out.println("Creating new conversation");
-            } else {
-                conversation = existingConv.get();
-                System.out.println("Using existing conversation: " + conversation.getConversationId());
-            }
 
             // Only add message if it's not an initial conversation creation
-            if (!isInitial && messageText != null && !messageText.trim().isEmpty()) {
+            if (hasText) {
                 Conversation.Message message = new Conversation.Message(
                     senderId,
-                    encryptionUtil.encrypt(messageText),
+                    encryptedText,
                     LocalDateTime.now(),
-                    "sent"
+                    MessageStatus.SENT
                 );
-                conversation.getMessages().add(message);
-            }
 
-            conversation = conversationRepository.save(conversation);
+                // One upsert finds or creates the conversation, claims the seq and updates the summary
+                conversation = directConversationService.recordMessage(senderId, receiverId,
+                    inboxService.conversationMessageUpdate(messageText, message, List.of(receiverId)));
+                message.setSeq(conversation.getMessageSeq());
+                messageStore.append(conversation.getConversationId(), message);
+
+                Map<String, Object> messageMap = new HashMap<>();
+                messageMap.put("id", message.getId());
+                messageMap.put("seq", message.getSeq());
+                messageMap.put("senderId", senderId);
+                messageMap.put("text", messageText);
+                messageMap.put("timestamp", message.getTimestamp());
+                messageMap.put("status", message.getStatus());
+                realtimeGateway.publish(participants, Map.of(
+                    "type", "message",
+                    "conversationId", conversation.getConversationId(),
+                    "message", messageMap
+                ));
+            } else {
+                conversation = directConversationService.getOrCreate(senderId, receiverId);
+            }
 
             return ResponseEntity.ok(Map.of(
                 "message", "Message sent successfully",
                 "conversationId", conversation.getConversationId()
             ));
 
+        } catch (RejectedExecutionException e) {
+            log.warn("messages.send outcome=deadline_exceeded");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Server busy, please retry"));
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("messages.send outcome=error", e);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
     @GetMapping
-    public ResponseEntity<?> getConversationHistory(@RequestParam String userId) {
+    public ResponseEntity<StreamingResponseBody> getConversationHistory(@RequestParam String userId,
+                                                                        @RequestParam(required = false) Integer limit,
+                                                                        @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                                        AuthenticatedUser caller) {
         try {
+            if (caller != null && !caller.is(userId)) {
+                return jsonStreamWriter.value(HttpStatus.FORBIDDEN, Map.of("error", "Cannot read another user's conversations"));
+            }
+
             // Validate user exists
-            Optional<User> user = userRepository.findById(userId);
-            if (user.isEmpty()) {
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "User not found"));
+            if (!userLookupService.exists(userId)) {
+                return jsonStreamWriter.value(HttpStatus.BAD_REQUEST, Map.of("error", "User not found"));
             }
 
-            // Get all conversations for the user
-            List<Conversation> conversations = conversationRepository.findByParticipantsContaining(userId);
-
-            // Process and format conversations
-            List<Map<String, Object>> formattedConversations = conversations.stream()
-                .map(conv -> {
-                    Map<String, Object> conversationMap = new HashMap<>();
-                    conversationMap.put("conversationId", conv.getConversationId());
-                    conversationMap.put("participants", conv.getParticipants());
-
-                    // Decrypt and format messages
-                    List<Map<String, Object>> messages = conv.getMessages().stream()
-                        .map(msg -> {
-                            Map<String, Object> messageMap = new HashMap<>();
-                            messageMap.put("senderId", msg.getSenderId());
-                            messageMap.put("text", encryptionUtil.decrypt(msg.getText()));
-                            messageMap.put("timestamp", msg.getTimestamp());
-                            messageMap.put("status", msg.getStatus());
-                            return messageMap;
-                        })
-                        .collect(Collectors.toList());
-
-                    conversationMap.put("messages", messages);
-                    return conversationMap;
-                })
-                .collect(Collectors.toList());
-
-            return ResponseEntity.ok(Map.of("conversations", formattedConversations));
+            int pageSize = MessageCursor.pageSize(limit);
+
+            // Stream conversations off a cursor and write each one, with only the latest page
+            // of its history, before reading the next
+            return jsonStreamWriter.stream(json -> {
+                json.writeStartObject();
+                json.writeArrayFieldStart("conversations");
+                Query query = Query.query(Criteria.where("participants").is(userId));
+                try (Stream<Conversation> conversations = readTemplate.stream(query, Conversation.class)) {
+                    Iterator<Conversation> iterator = conversations.iterator();
+                    while (iterator.hasNext()) {
+                        Conversation conv = iterator.next();
+                        json.writeStartObject();
+                        json.writeStringField("conversationId", conv.getConversationId());
+                        json.writeObjectField("participants", conv.getParticipants());
+                        writePage(json, conv, loadPage(conv, null, null, pageSize));
+                        json.writeEndObject();
+                    }
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            });
 
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", "Failed to retrieve conversations: " + e.getMessage()));
+            log.warn("messages.history outcome=error userId={}", userId, e);
+            return jsonStreamWriter.value(HttpStatus.BAD_REQUEST,
+                Map.of("error", "Failed to retrieve conversations: " + e.getMessage()));
         }
     }
 
     @GetMapping("/{conversationId}")
-    public ResponseEntity<?> getConversationMessages(@PathVariable String conversationId) {
+    public ResponseEntity<?> getConversationMessages(@PathVariable String conversationId,
+                                                     @RequestParam(required = false) String before,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                     AuthenticatedUser caller) {
         try {
-            Optional<Conversation> conversation = conversationRepository.findById(conversationId);
-            
+            // A conversation created moments ago may not have replicated yet
+            Optional<Conversation> conversation = Optional.ofNullable(readTemplate.findById(conversationId, Conversation.class))
+                .or(() -> conversationRepository.findById(conversationId));
+
             if (conversation.isEmpty()) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Conversation not found"));
             }
 
             Conversation conv = conversation.get();
-            
-            // Decrypt and format messages
-            List<Map<String, Object>> messages = conv.getMessages().stream()
-                .map(msg -> {
-                    Map<String, Object> messageMap = new HashMap<>();
-                    messageMap.put("senderId", msg.getSenderId());
-                    messageMap.put("text", encryptionUtil.decrypt(msg.getText()));
-                    messageMap.put("timestamp", msg.getTimestamp());
-                    messageMap.put("status", msg.getStatus());
-                    return messageMap;
-                })
-                .collect(Collectors.toList());
+            if (caller != null && !conv.getParticipants().contains(caller.getUserId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not a participant of this conversation"));
+            }
+
+            List<Conversation.Message> page = loadPage(conv,
+                MessageCursor.parse(before), MessageCursor.parse(after), MessageCursor.pageSize(limit));
 
             Map<String, Object> response = new HashMap<>();
             response.put("conversationId", conv.getConversationId());
             response.put("participants", conv.getParticipants());
-            response.put("messages", messages);
+            response.put("messages", toDtos(encryptionUtil, conv, page));
+            response.putAll(cursors(page));
 
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("messages.conversation outcome=error conversationId={}", conversationId, e);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Failed to retrieve messages: " + e.getMessage()));
         }
     }
-} 
\ No newline at end of file
+
+    private List<Conversation.Message> loadPage(Conversation conversation, MessageCursor before,
+                                                MessageCursor after, int limit) {
+        if (conversation.getMessages().isEmpty()) {
+            return messageStore.findPage(conversation.getConversationId(), before, after, limit);
+        }
+        // Not migrated to buckets yet: page over the embedded messages plus anything bucketed since
+        List<Conversation.Message> messages = new ArrayList<>(conversation.getMessages());
+        messages.addAll(messageStore.findAll(conversation.getConversationId()));
+        return MessageCursor.slice(messages, msg -> MessageCursor.of(msg.getTimestamp(), msg.getId()),
+            before, after, limit);
+    }
+
+    // Decrypts one page of messages. Each message's status comes from the other
+    // participant's receipt watermarks. Also used by ReactiveMessageController.
+    static List<MessageDto> toDtos(EncryptionUtil encryptionUtil, Conversation conversation,
+                                   List<Conversation.Message> page) {
+        List<String> texts = encryptionUtil.decryptAll(page.stream()
+            .map(Conversation.Message::getText)
+            .collect(Collectors.toList()));
+
+        List<MessageDto> messages = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            Conversation.Message msg = page.get(i);
+            String recipientId = conversation.getParticipants().stream()
+                .filter(id -> !id.equals(msg.getSenderId()))
+                .findFirst()
+                .orElse(msg.getSenderId());
+            messages.add(new MessageDto(msg.getId(), msg.getSeq(), msg.getSenderId(), null, texts.get(i),
+                msg.getTimestamp(), MessageStatus.of(msg.getSeq(), msg.getStatus(),
+                    conversation.getDeliveredSeq().getOrDefault(recipientId, 0L),
+                    conversation.getReadSeq().getOrDefault(recipientId, 0L))));
+        }
+        return messages;
+    }
+
+    // Streamed form of one page: "messages" plus the cursors to fetch its neighbours
+    private void writePage(JsonGenerator json, Conversation conversation, List<Conversation.Message> page)
+            throws IOException {
+        json.writeArrayFieldStart("messages");
+        for (MessageDto message : toDtos(encryptionUtil, conversation, page)) {
+            json.writeObject(message);
+        }
+        json.writeEndArray();
+        for (Map.Entry<String, String> cursor : cursors(page).entrySet()) {
+            json.writeStringField(cursor.getKey(), cursor.getValue());
+        }
+    }
+
+    // nextBefore/nextAfter for fetching the neighbours of a page; empty for an empty page
+    static Map<String, String> cursors(List<Conversation.Message> page) {
+        Map<String, String> cursors = new LinkedHashMap<>();
+        if (!page.isEmpty()) {
+            Conversation.Message oldest = page.get(0);
+            Conversation.Message newest = page.get(page.size() - 1);
+            cursors.put("nextBefore", MessageCursor.of(oldest.getTimestamp(), oldest.getId()).encode());
+            cursors.put("nextAfter", MessageCursor.of(newest.getTimestamp(), newest.getId()).encode());
+        }
+        return cursors;
+    }
+}
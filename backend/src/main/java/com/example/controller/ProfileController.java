@@ -2,10 +2,20 @@ package com.example.controller;
 
 import com.example.model.User;
 import com.example.repository.UserRepository;
-import com.example.security.PasswordUtil;
+import com.example.security.AuthenticatedUser;
+import com.example.security.PasswordHashingService;
+import com.example.service.UserLookupService;
+import com.example.service.UserSearchService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Optional;
 
@@ -15,17 +25,22 @@ import java.util.Optional;
 public class ProfileController {
 
     private final UserRepository userRepository;
-    private final PasswordUtil passwordUtil;
+    private final PasswordHashingService passwordHashingService;
+    private final UserLookupService userLookupService;
+    private final MongoTemplate mongoTemplate;
 
-    public ProfileController(UserRepository userRepository, PasswordUtil passwordUtil) {
+    public ProfileController(UserRepository userRepository, PasswordHashingService passwordHashingService,
+                             UserLookupService userLookupService, MongoTemplate mongoTemplate) {
         this.userRepository = userRepository;
-        this.passwordUtil = passwordUtil;
+        this.passwordHashingService = passwordHashingService;
+        this.userLookupService = userLookupService;
+        this.mongoTemplate = mongoTemplate;
     }
 
     @GetMapping
     public ResponseEntity<?> getUserProfile(@RequestParam String userId) {
         try {
-            Optional<User> userOptional = userRepository.findById(userId);
+            Optional<User> userOptional = userLookupService.findById(userId);
             
             if (userOptional.isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -47,9 +62,16 @@ public class ProfileController {
     }
 
     @PutMapping("/update")
-    public ResponseEntity<?> updateProfile(@RequestBody Map<String, String> updates) {
+    public ResponseEntity<?> updateProfile(@RequestBody Map<String, String> updates,
+                                           @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                           AuthenticatedUser caller) {
         try {
             String userId = updates.get("userId");
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot update another user's profile"));
+            }
+
             Optional<User> userOptional = userRepository.findById(userId);
             
             if (userOptional.isEmpty()) {
@@ -85,8 +107,25 @@ public class ProfileController {
                 user.setEmail(updates.get("email"));
             }
 
-            // Save updated user
-            userRepository.save(user);
+            // $set only the profile fields; saving the loaded document would write back a
+            // stale friendIds and drop a friend accepted in the meantime
+            user.setSearchPrefixes(UserSearchService.prefixesFor(user));
+            user.setUpdatedAt(LocalDateTime.now());
+            Update update = new Update()
+                .set("username", user.getUsername())
+                .set("firstName", user.getFirstName())
+                .set("lastName", user.getLastName())
+                .set("email", user.getEmail())
+                .set("searchPrefixes", user.getSearchPrefixes())
+                .set("updatedAt", user.getUpdatedAt());
+            try {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), update, User.class);
+            } catch (DuplicateKeyException e) {
+                // Taken by another user between the checks above and this write
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Username or email already taken"));
+            }
+            userLookupService.invalidate(user.getId());
 
             return ResponseEntity.ok(Map.of(
                 "message", "Profile updated successfully",
@@ -104,7 +143,9 @@ public class ProfileController {
     }
 
     @PutMapping("/update-password")
-    public ResponseEntity<?> updatePassword(@RequestBody Map<String, String> passwordUpdate) {
+    public ResponseEntity<?> updatePassword(@RequestBody Map<String, String> passwordUpdate,
+                                            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                            AuthenticatedUser caller) {
         try {
             String userId = passwordUpdate.get("userId");
             String currentPassword = passwordUpdate.get("currentPassword");
@@ -115,6 +156,11 @@ public class ProfileController {
                     .body(Map.of("error", "Missing required fields"));
             }
 
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Cannot change another user's password"));
+            }
+
             Optional<User> userOptional = userRepository.findById(userId);
             if (userOptional.isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -124,14 +170,21 @@ public class ProfileController {
             User user = userOptional.get();
 
             // Verify current password
-            if (!passwordUtil.decrypt(user.getPassword()).equals(currentPassword)) {
+            if (!passwordHashingService.verify(currentPassword, user.getPassword())) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Current password is incorrect"));
             }
 
-            // Update password
-            user.setPassword(passwordUtil.encrypt(newPassword));
-            userRepository.save(user);
+            // Update only the password, and only if it is still the one just verified
+            boolean updated = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(userId).and("password").is(user.getPassword())),
+                new Update().set("password", passwordHashingService.hash(newPassword)),
+                User.class).getModifiedCount() > 0;
+            if (!updated) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Password was changed concurrently, please retry"));
+            }
+            userLookupService.invalidate(user.getId());
 
             return ResponseEntity.ok(Map.of("message", "Password updated successfully"));
 
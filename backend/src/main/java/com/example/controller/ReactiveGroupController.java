@@ -0,0 +1,219 @@
+package com.example.controller;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.dto.MessageDto;
+import com.example.model.Group;
+import com.example.model.User;
+import com.example.repository.reactive.ReactiveGroupRepository;
+import com.example.repository.reactive.ReactiveUserRepository;
+import com.example.security.AuthenticatedUser;
+import com.example.security.EncryptionUtil;
+import com.example.service.GroupFanoutService;
+import com.example.service.GroupReceiptService;
+import com.example.service.InboxService;
+import com.example.service.MessageCursor;
+import com.example.service.MessageStatus;
+import com.example.service.ReactiveMessagingService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// GroupController's send, history and list endpoints on the reactive driver, active under
+// the "reactive" profile. GET /groups/stream streams the list as application/x-ndjson.
+@RestController
+@RequestMapping("/groups")
+@Profile("reactive")
+public class ReactiveGroupController {
+
+    @Autowired
+    private ReactiveGroupRepository groupRepository;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Autowired
+    private ReactiveMessagingService messagingService;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private InboxService inboxService;
+
+    @Autowired
+    private GroupFanoutService groupFanoutService;
+
+    @PostMapping("/{groupId}/send")
+    public Mono<ResponseEntity<?>> sendGroupMessage(@PathVariable String groupId,
+                                                    @RequestBody Map<String, String> request,
+                                                    @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                    AuthenticatedUser caller) {
+        String senderId = request.get("senderId");
+        String messageText = request.get("text");
+
+        // Only the authenticated user may send as themselves
+        if (caller != null && !caller.is(senderId)) {
+            return error(HttpStatus.FORBIDDEN, "senderId does not match the authenticated user");
+        }
+
+        return Mono.defer(() -> {
+            Group.GroupMessage message = new Group.GroupMessage(
+                senderId,
+                encryptionUtil.encrypt(messageText),
+                LocalDateTime.now(),
+                MessageStatus.SENT
+            );
+            message.setId(new ObjectId().toHexString());
+
+            return messagingService.appendGroupMessage(groupId, message, inboxService.groupMessageUpdate(messageText, message))
+                .<ResponseEntity<?>>map(group -> {
+                    Map<String, Object> messageMap = new HashMap<>();
+                    messageMap.put("id", message.getId());
+                    messageMap.put("seq", message.getSeq());
+                    messageMap.put("senderId", senderId);
+                    messageMap.put("text", messageText);
+                    messageMap.put("timestamp", message.getTimestamp().toString());
+                    messageMap.put("status", message.getStatus());
+
+                    groupFanoutService.enqueue(groupId, group.getMemberIds(), senderId, message.getSeq(), Map.of(
+                        "type", "groupMessage",
+                        "groupId", groupId,
+                        "message", messageMap
+                    ));
+                    return ResponseEntity.ok(Map.of("message", "Message sent successfully"));
+                })
+                .switchIfEmpty(Mono.defer(() -> groupRepository.existsById(groupId)
+                    .flatMap(exists -> error(HttpStatus.BAD_REQUEST, exists
+                        ? "Sender is not a member of this group"
+                        : "Group not found"))));
+        }).onErrorResume(e -> error(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @GetMapping("/{groupId}/messages")
+    public Mono<ResponseEntity<?>> getGroupMessages(@PathVariable String groupId,
+                                                    @RequestParam(required = false) String before,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                    AuthenticatedUser caller) {
+        return Mono.defer(() -> {
+            MessageCursor beforeCursor = MessageCursor.parse(before);
+            MessageCursor afterCursor = MessageCursor.parse(after);
+            int pageSize = MessageCursor.pageSize(limit);
+
+            return groupRepository.findById(groupId)
+                .flatMap(group -> caller != null && !group.getMemberIds().contains(caller.getUserId())
+                    ? error(HttpStatus.FORBIDDEN, "Not a member of this group")
+                    : groupPage(group, beforeCursor, afterCursor, pageSize))
+                .switchIfEmpty(error(HttpStatus.BAD_REQUEST, "Group not found"));
+        }).onErrorResume(e -> error(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    private Mono<ResponseEntity<?>> groupPage(Group group, MessageCursor before, MessageCursor after, int limit) {
+        // The group's receipt watermark and the page are read at once; only the sender
+        // names have to wait for the page
+        return Mono.zip(messagingService.lowWatermark(group), messagingService.findGroupPage(group, before, after, limit))
+            .flatMap(result -> {
+                List<Group.GroupMessage> messages = result.getT2();
+                List<String> senderIds = messages.stream()
+                    .map(Group.GroupMessage::getSenderId)
+                    .distinct()
+                    .collect(Collectors.toList());
+                return userRepository.findProfilesByIds(senderIds)
+                    .collectMap(User::getId)
+                    .<ResponseEntity<?>>map(senders -> ResponseEntity.ok(groupPage(messages, senders, result.getT1())));
+            });
+    }
+
+    private Map<String, Object> groupPage(List<Group.GroupMessage> page, Map<String, User> senders,
+                                          GroupReceiptService.Watermark everyone) {
+        List<String> texts = encryptionUtil.decryptAll(page.stream()
+            .map(Group.GroupMessage::getText)
+            .collect(Collectors.toList()));
+
+        // A message is delivered/read once every member's watermark has reached it
+        List<MessageDto> messages = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            Group.GroupMessage msg = page.get(i);
+            User sender = senders.get(msg.getSenderId());
+            messages.add(new MessageDto(msg.getId(), msg.getSeq(), msg.getSenderId(),
+                sender != null ? sender.getUsername() : "Unknown User",
+                texts.get(i), msg.getTimestamp(),
+                MessageStatus.of(msg.getSeq(), msg.getStatus(), everyone.deliveredSeq(), everyone.readSeq())));
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("messages", messages);
+        if (!page.isEmpty()) {
+            Group.GroupMessage oldest = page.get(0);
+            Group.GroupMessage newest = page.get(page.size() - 1);
+            response.put("nextBefore", MessageCursor.of(oldest.getTimestamp(), oldest.getId()).encode());
+            response.put("nextAfter", MessageCursor.of(newest.getTimestamp(), newest.getId()).encode());
+        }
+        return response;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<?>> getUserGroups(@RequestParam String userId,
+                                                 @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                 AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return error(HttpStatus.FORBIDDEN, "Cannot list another user's groups");
+        }
+        // The user check and the group query run at once
+        return Mono.zip(userRepository.existsById(userId), groupRepository.findByMember(userId).map(this::toGroupMap).collectList())
+            .<ResponseEntity<?>>map(result -> result.getT1()
+                ? ResponseEntity.ok(Map.of("groups", result.getT2()))
+                : ResponseEntity.badRequest().body(Map.of("error", "User not found")))
+            .onErrorResume(e -> error(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    // Same entries as getUserGroups, written one per line
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> streamUserGroups(@RequestParam String userId,
+                                                      @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                      AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot list another user's groups"));
+        }
+        return userRepository.existsById(userId)
+            .flatMapMany(exists -> exists
+                ? groupRepository.findByMember(userId).map(this::toGroupMap)
+                : Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "User not found")));
+    }
+
+    private Map<String, Object> toGroupMap(Group group) {
+        Map<String, Object> groupMap = new HashMap<>();
+        groupMap.put("groupId", group.getGroupId());
+        groupMap.put("name", group.getName());
+        groupMap.put("creatorId", group.getCreatorId());
+        groupMap.put("memberIds", group.getMemberIds());
+        return groupMap;
+    }
+
+    private static Mono<ResponseEntity<?>> error(HttpStatus status, String message) {
+        return Mono.just(ResponseEntity.status(status).body(Map.of("error", message)));
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.controller;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.model.Conversation;
+import com.example.model.User;
+import com.example.repository.reactive.ReactiveUserRepository;
+import com.example.security.AuthenticatedUser;
+import com.example.security.EncryptionUtil;
+import com.example.service.DirectConversationService;
+import com.example.service.FriendGraph;
+import com.example.service.InboxService;
+import com.example.service.MessageCursor;
+import com.example.service.MessageStatus;
+import com.example.service.ReactiveMessagingService;
+import com.example.service.RealtimeGateway;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// MessageController's send and history endpoints on the reactive driver, active under the
+// "reactive" profile. Responses have the same shape; GET /messages/stream additionally
+// streams the history as application/x-ndjson, one conversation per line.
+@RestController
+@RequestMapping("/messages")
+@Profile("reactive")
+public class ReactiveMessageController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveMessageController.class);
+
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveMessagingService messagingService;
+    private final EncryptionUtil encryptionUtil;
+    private final InboxService inboxService;
+    private final RealtimeGateway realtimeGateway;
+    private final FriendGraph friendGraph;
+    private final int historyConcurrency;
+
+    public ReactiveMessageController(ReactiveUserRepository userRepository,
+                                     ReactiveMessagingService messagingService,
+                                     EncryptionUtil encryptionUtil,
+                                     InboxService inboxService,
+                                     RealtimeGateway realtimeGateway,
+                                     FriendGraph friendGraph,
+                                     @Value("${reactive.history.concurrency:4}") int historyConcurrency) {
+        this.userRepository = userRepository;
+        this.messagingService = messagingService;
+        this.encryptionUtil = encryptionUtil;
+        this.inboxService = inboxService;
+        this.realtimeGateway = realtimeGateway;
+        this.friendGraph = friendGraph;
+        this.historyConcurrency = historyConcurrency;
+    }
+
+    @PostMapping("/send")
+    public Mono<ResponseEntity<?>> sendMessage(@RequestBody Map<String, String> request,
+                                               @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                               AuthenticatedUser caller) {
+        String senderId = request.get("senderId");
+        String receiverId = request.get("receiverId");
+        String messageText = request.get("text");
+        boolean isInitial = Boolean.parseBoolean(request.get("isInitial"));
+
+        // Only the authenticated user may send as themselves
+        if (caller != null && !caller.is(senderId)) {
+            return error(HttpStatus.FORBIDDEN, "senderId does not match the authenticated user");
+        }
+        if (senderId == null || receiverId == null) {
+            return error(HttpStatus.BAD_REQUEST, "Invalid sender or receiver ID");
+        }
+
+        // Same friendship check as MessageController: the graph, then Mongo if it says no
+        Mono<Boolean> friends = friendGraph.linked(senderId, receiverId)
+            ? Mono.just(true)
+            : messagingService.areFriends(senderId, receiverId);
+        return Mono.zip(userRepository.findProfilesByIds(List.of(senderId, receiverId)).collectMap(User::getId), friends)
+            .flatMap(result -> {
+                Map<String, User> users = result.getT1();
+                if (!users.containsKey(senderId) || !users.containsKey(receiverId)) {
+                    return error(HttpStatus.BAD_REQUEST, "Invalid sender or receiver ID");
+                }
+                if (!result.getT2()) {
+                    return error(HttpStatus.BAD_REQUEST, "Users must be friends to exchange messages");
+                }
+
+                Mono<Conversation> conversation = !isInitial && messageText != null && !messageText.trim().isEmpty()
+                    ? recordMessage(senderId, receiverId, messageText)
+                    : messagingService.getOrCreate(senderId, receiverId);
+                return conversation.<ResponseEntity<?>>map(conv -> ResponseEntity.ok(Map.of(
+                    "message", "Message sent successfully",
+                    "conversationId", conv.getConversationId()
+                )));
+            })
+            .onErrorResume(e -> {
+                log.warn("messages.send outcome=error", e);
+                return error(HttpStatus.BAD_REQUEST, e.getMessage());
+            });
+    }
+
+    private Mono<Conversation> recordMessage(String senderId, String receiverId, String messageText) {
+        return Mono.defer(() -> {
+            Conversation.Message message = new Conversation.Message(
+                senderId,
+                encryptionUtil.encrypt(messageText),
+                LocalDateTime.now(),
+                MessageStatus.SENT
+            );
+
+            // One upsert finds or creates the conversation, claims the seq and updates the summary
+            return messagingService.recordMessage(senderId, receiverId,
+                    inboxService.conversationMessageUpdate(messageText, message, List.of(receiverId)))
+                .flatMap(conversation -> {
+                    message.setSeq(conversation.getMessageSeq());
+                    return messagingService.append(conversation.getConversationId(), message)
+                        .thenReturn(conversation);
+                })
+                .doOnNext(conversation -> {
+                    Map<String, Object> messageMap = new HashMap<>();
+                    messageMap.put("id", message.getId());
+                    messageMap.put("seq", message.getSeq());
+                    messageMap.put("senderId", senderId);
+                    messageMap.put("text", messageText);
+                    messageMap.put("timestamp", message.getTimestamp());
+                    messageMap.put("status", message.getStatus());
+                    realtimeGateway.publish(DirectConversationService.participants(senderId, receiverId), Map.of(
+                        "type", "message",
+                        "conversationId", conversation.getConversationId(),
+                        "message", messageMap
+                    ));
+                });
+        });
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<?>> getConversationHistory(@RequestParam String userId,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                          AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return error(HttpStatus.FORBIDDEN, "Cannot read another user's conversations");
+        }
+        // The user check does not hold up the conversation reads; both run at once
+        return Mono.zip(userRepository.existsById(userId), history(userId, limit).collectList())
+            .<ResponseEntity<?>>map(result -> result.getT1()
+                ? ResponseEntity.ok(Map.of("conversations", result.getT2()))
+                : ResponseEntity.badRequest().body(Map.of("error", "User not found")))
+            .onErrorResume(e -> {
+                log.warn("messages.history outcome=error userId={}", userId, e);
+                return error(HttpStatus.BAD_REQUEST, "Failed to retrieve conversations: " + e.getMessage());
+            });
+    }
+
+    // Same entries as getConversationHistory, written one per line as each is ready
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> streamConversationHistory(@RequestParam String userId,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                               AuthenticatedUser caller) {
+        if (caller != null && !caller.is(userId)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot read another user's conversations"));
+        }
+        return userRepository.existsById(userId)
+            .flatMapMany(exists -> exists
+                ? history(userId, limit)
+                : Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "User not found")));
+    }
+
+    // Each conversation with the latest page of its history. Several pages load at once;
+    // flatMapSequential still emits them in the order the conversations were read.
+    private Flux<Map<String, Object>> history(String userId, Integer limit) {
+        int pageSize = MessageCursor.pageSize(limit);
+        return messagingService.conversationsOf(userId)
+            .flatMapSequential(conv -> messagingService.loadPage(conv, null, null, pageSize)
+                .map(page -> conversationPage(conv, page)), historyConcurrency);
+    }
+
+    @GetMapping("/{conversationId}")
+    public Mono<ResponseEntity<?>> getConversationMessages(@PathVariable String conversationId,
+                                                           @RequestParam(required = false) String before,
+                                                           @RequestParam(required = false) String after,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                                           AuthenticatedUser caller) {
+        return Mono.defer(() -> {
+            MessageCursor beforeCursor = MessageCursor.parse(before);
+            MessageCursor afterCursor = MessageCursor.parse(after);
+            int pageSize = MessageCursor.pageSize(limit);
+
+            return messagingService.findConversation(conversationId)
+                .flatMap(conv -> caller != null && !conv.getParticipants().contains(caller.getUserId())
+                    ? error(HttpStatus.FORBIDDEN, "Not a participant of this conversation")
+                    : messagingService.loadPage(conv, beforeCursor, afterCursor, pageSize)
+                        .<ResponseEntity<?>>map(page -> ResponseEntity.ok(conversationPage(conv, page))))
+                .switchIfEmpty(error(HttpStatus.BAD_REQUEST, "Conversation not found"));
+        }).onErrorResume(e -> {
+            log.warn("messages.conversation outcome=error conversationId={}", conversationId, e);
+            return error(HttpStatus.BAD_REQUEST, "Failed to retrieve messages: " + e.getMessage());
+        });
+    }
+
+    private Map<String, Object> conversationPage(Conversation conversation, List<Conversation.Message> page) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("conversationId", conversation.getConversationId());
+        response.put("participants", conversation.getParticipants());
+        response.put("messages", MessageController.toDtos(encryptionUtil, conversation, page));
+        response.putAll(MessageController.cursors(page));
+        return response;
+    }
+
+    private static Mono<ResponseEntity<?>> error(HttpStatus status, String message) {
+        return Mono.just(ResponseEntity.status(status).body(Map.of("error", message)));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.controller;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.security.AuthenticatedUser;
+import com.example.service.RealtimeGateway;
+
+// Push channel at /ws?token=... (or ?userId= when tokens are not enforced). The server only sends; clients keep using the REST
+// endpoints to send messages and to page through history after a reconnect.
+@Component
+public class RealtimeWebSocketHandler extends TextWebSocketHandler {
+
+    private final RealtimeGateway realtimeGateway;
+
+    public RealtimeWebSocketHandler(RealtimeGateway realtimeGateway) {
+        this.realtimeGateway = realtimeGateway;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        String userId = session.getUri() == null ? null
+            : UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst("userId");
+        AuthenticatedUser caller = (AuthenticatedUser) session.getAttributes().get(AuthenticatedUser.REQUEST_ATTRIBUTE);
+
+        if (caller != null) {
+            if (userId != null && !caller.is(userId)) {
+                session.close(CloseStatus.POLICY_VIOLATION.withReason("userId does not match the token"));
+                return;
+            }
+            userId = caller.getUserId();
+        }
+        if (userId == null || userId.isBlank()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("userId is required"));
+            return;
+        }
+        realtimeGateway.register(session, userId);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        realtimeGateway.unregister(session);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        realtimeGateway.unregister(session);
+    }
+}
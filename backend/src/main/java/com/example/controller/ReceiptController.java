@@ -0,0 +1,72 @@
+package com.example.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.security.AuthenticatedUser;
+import com.example.service.ReceiptService;
+
+// Receipts are served the same way whether or not the "reactive" profile is active
+@RestController
+@RequestMapping("/messages")
+public class ReceiptController {
+
+    private final ReceiptService receiptService;
+
+    public ReceiptController(ReceiptService receiptService) {
+        this.receiptService = receiptService;
+    }
+
+    // Batch acknowledgement: { userId, receipts: [ { conversationId | groupId, deliveredSeq, readSeq } ] }
+    @PostMapping("/receipts")
+    public ResponseEntity<?> acknowledge(@RequestBody Map<String, Object> request,
+                                         @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                         AuthenticatedUser caller) {
+        try {
+            Object userIdObj = request.get("userId");
+            Object receiptsObj = request.get("receipts");
+            if (!(userIdObj instanceof String userId) || !(receiptsObj instanceof List<?> rawReceipts)) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "userId and receipts are required"));
+            }
+
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "userId does not match the authenticated user"));
+            }
+
+            List<ReceiptService.Receipt> receipts = new ArrayList<>(rawReceipts.size());
+            for (Object raw : rawReceipts) {
+                if (!(raw instanceof Map<?, ?> receipt)) {
+                    return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid receipt format"));
+                }
+                receipts.add(new ReceiptService.Receipt(
+                    (String) receipt.get("conversationId"),
+                    (String) receipt.get("groupId"),
+                    toLong(receipt.get("deliveredSeq")),
+                    toLong(receipt.get("readSeq"))));
+            }
+
+            int applied = receiptService.acknowledge(userId, receipts);
+            return ResponseEntity.ok(Map.of("applied", applied));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.service.GroupFanoutService;
+import com.example.service.RealtimeGateway;
+import com.example.service.UserLookupService;
+import com.example.service.WriteBehindMessageStore;
+
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    private final RealtimeGateway realtimeGateway;
+    private final UserLookupService userLookupService;
+    private final GroupFanoutService groupFanoutService;
+    private final ObjectProvider<WriteBehindMessageStore> writeBehindMessageStore;
+
+    public StatsController(RealtimeGateway realtimeGateway, UserLookupService userLookupService,
+                           GroupFanoutService groupFanoutService,
+                           ObjectProvider<WriteBehindMessageStore> writeBehindMessageStore) {
+        this.realtimeGateway = realtimeGateway;
+        this.userLookupService = userLookupService;
+        this.groupFanoutService = groupFanoutService;
+        this.writeBehindMessageStore = writeBehindMessageStore;
+    }
+
+    @GetMapping("/realtime")
+    public ResponseEntity<?> getRealtimeStats() {
+        return ResponseEntity.ok(realtimeGateway.getMetrics());
+    }
+
+    @GetMapping("/user-cache")
+    public ResponseEntity<?> getUserCacheStats() {
+        return ResponseEntity.ok(userLookupService.getStats());
+    }
+
+    @GetMapping("/group-fanout")
+    public ResponseEntity<?> getGroupFanoutStats() {
+        return ResponseEntity.ok(groupFanoutService.getMetrics());
+    }
+
+    @GetMapping("/ingest")
+    public ResponseEntity<?> getIngestStats() {
+        WriteBehindMessageStore store = writeBehindMessageStore.getIfAvailable();
+        return ResponseEntity.ok(store != null ? store.getMetrics() : Map.of("mode", "sync"));
+    }
+}
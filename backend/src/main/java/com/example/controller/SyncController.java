@@ -0,0 +1,53 @@
+package com.example.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.security.AuthenticatedUser;
+import com.example.service.MessageCursor;
+import com.example.service.SyncService;
+
+@RestController
+@RequestMapping("/sync")
+public class SyncController {
+
+    private final SyncService syncService;
+
+    public SyncController(SyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    // Changes since the sync that returned the syncToken passed as `since`; omit it on first
+    // launch. (Not `token`, which the JWT filter reads for the WebSocket handshake.)
+    @GetMapping
+    public ResponseEntity<?> sync(@RequestParam String userId,
+                                  @RequestParam(required = false) String since,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false)
+                                  AuthenticatedUser caller) {
+        try {
+            if (caller != null && !caller.is(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "userId does not match the authenticated user"));
+            }
+
+            Map<String, Object> changes = syncService.sync(userId, since, MessageCursor.pageSize(limit));
+            if (changes == null) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "User not found"));
+            }
+            return ResponseEntity.ok(changes);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "Failed to sync: " + e.getMessage()));
+        }
+    }
+}
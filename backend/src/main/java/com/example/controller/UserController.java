@@ -1,12 +1,17 @@
 package com.example.controller;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -15,27 +20,48 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.dto.UserSummaryDto;
 import com.example.model.User;
 import com.example.repository.UserRepository;
-import com.example.security.EncryptionUtil;
 import com.example.security.JwtUtil;
+import com.example.security.PasswordHashingService;
+import com.example.service.FriendGraph;
+import com.example.service.UserLookupService;
+import com.example.service.UserSearchService;
+
+import io.jsonwebtoken.Claims;
 
 @RestController
 public class UserController {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(UserController.class);
+
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
-    private final EncryptionUtil encryptionUtil;
+    private final PasswordHashingService passwordHashingService;
+    private final UserLookupService userLookupService;
+    private final UserSearchService userSearchService;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final FriendGraph friendGraph;
 
     public UserController(
         UserRepository userRepository, 
         JwtUtil jwtUtil,
-        EncryptionUtil encryptionUtil
+        PasswordHashingService passwordHashingService,
+        UserLookupService userLookupService,
+        UserSearchService userSearchService,
+        JsonStreamWriter jsonStreamWriter,
+        FriendGraph friendGraph
     ) {
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
-        this.encryptionUtil = encryptionUtil;
+        this.passwordHashingService = passwordHashingService;
+        this.userLookupService = userLookupService;
+        this.userSearchService = userSearchService;
+        this.jsonStreamWriter = jsonStreamWriter;
+        this.friendGraph = friendGraph;
     }
 
     @PostMapping("/login")
@@ -44,28 +70,24 @@ public class UserController {
         try {
             String email = loginRequest.get("email");
             String rawPassword = loginRequest.get("password");
-            
-            System.out.println("Login attempt for email: " + email);
 
             Optional<User> storedUser = userRepository.findByEmail(email);
             
             if (storedUser.isEmpty()) {
-                System.out.println("User not found with email: " + email);
+                passwordHashingService.verifyUnknownUser(rawPassword);
+                log.debug("login outcome=unknown_email");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid email or password"));
             }
 
             User user = storedUser.get();
-            String encryptedAttempt = encryptionUtil.encrypt(rawPassword);
-            
-            System.out.println("Password comparison:");
-            System.out.println("Raw password provided: " + rawPassword);
-            System.out.println("Encrypted attempt: " + encryptedAttempt);
-            System.out.println("Stored encrypted: " + user.getPassword());
+
+            boolean matches = passwordHashingService.verify(rawPassword, user.getPassword());
             
-            if (encryptedAttempt.equals(user.getPassword())) {
-                System.out.println("Password match successful!");
-                String token = jwtUtil.generateToken(email);
+            if (matches) {
+                log.debug("login outcome=success userId={}", user.getId());
+                passwordHashingService.upgradeIfNeeded(user, rawPassword);
+                String token = jwtUtil.generateToken(email, user.getId());
                 
                 Map<String, Object> userMap = new HashMap<>();
                 userMap.put("id", user.getId());
@@ -82,14 +104,17 @@ public class UserController {
                 
                 return ResponseEntity.ok(response);
             } else {
-                System.out.println("Password match failed!");
+                log.debug("login outcome=bad_password userId={}", user.getId());
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid email or password"));
             }
                 
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", "Too many login attempts, please retry"));
         } catch (Exception e) {
-            System.err.println("Login error: " + e.getMessage());
-            e.printStackTrace();
+            log.error("login outcome=error", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Login error: " + e.getMessage()));
         }
@@ -99,8 +124,6 @@ public class UserController {
     @CrossOrigin
     public ResponseEntity<?> register(@RequestBody User user) {
         try {
-            System.out.println("Registration attempt for email: " + user.getEmail());
-
             // Check if email already exists
             if (userRepository.findByEmail(user.getEmail()).isPresent()) {
                 return ResponseEntity.badRequest()
@@ -115,19 +138,20 @@ public class UserController {
                                 "message", "Username already exists"));
             }
 
-            // Encrypt password before saving
-            String encryptedPassword = encryptionUtil.encrypt(user.getPassword());
-            System.out.println("Original password: " + user.getPassword());
-            System.out.println("Encrypted password: " + encryptedPassword);
-            user.setPassword(encryptedPassword);
+            // Hash password before saving
+            user.setPassword(passwordHashingService.hash(user.getPassword()));
 
             // Initialize friendIds if null
             if (user.getFriendIds() == null) {
                 user.setFriendIds(new ArrayList<>());
             }
 
+            user.setSearchPrefixes(UserSearchService.prefixesFor(user));
+            user.setUpdatedAt(LocalDateTime.now());
+
             User savedUser = userRepository.save(user);
-            String token = jwtUtil.generateToken(user.getEmail());
+            userLookupService.invalidate(savedUser.getId());
+            String token = jwtUtil.generateToken(savedUser.getEmail(), savedUser.getId());
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
@@ -144,9 +168,13 @@ public class UserController {
 
             return ResponseEntity.ok(response);
 
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("status", "error",
+                            "message", "Server busy, please retry"));
         } catch (Exception e) {
-            System.err.println("Registration error: " + e.getMessage());
-            e.printStackTrace();
+            log.error("register outcome=error", e);
             return ResponseEntity.badRequest()
                 .body(Map.of("status", "error", 
                             "message", e.getMessage()));
@@ -155,61 +183,64 @@ public class UserController {
 
     @GetMapping("/validate")
     public ResponseEntity<?> validateToken(@RequestParam String token) {
-        System.out.println("\n=== Token Validation ===");
-        System.out.println("Token: " + token);
-        
-        boolean isValid = jwtUtil.validateToken(token);
-        if (isValid) {
-            String email = jwtUtil.extractUsername(token);
-            System.out.println("Validation Status: VALID");
-            System.out.println("Email: " + email);
+        Claims claims = jwtUtil.parseValidClaims(token);
+        if (claims != null) {
+            String email = claims.getSubject();
             return ResponseEntity.ok("Token is valid for user: " + email);
         }
-        
-        System.out.println("Validation Status: INVALID");
+
         return ResponseEntity.badRequest().body("Invalid token");
     }
 
     @GetMapping("/users")
     @CrossOrigin
-    public ResponseEntity<?> getAllUsers(@RequestParam String currentUserId) {
+    public ResponseEntity<StreamingResponseBody> getAllUsers(@RequestParam String currentUserId,
+                                                             @RequestParam(required = false) String q,
+                                                             @RequestParam(required = false) Integer page,
+                                                             @RequestParam(required = false) Integer size) {
         try {
-            System.out.println("Fetching all non-friend users for user: " + currentUserId);
-            
-            Optional<User> currentUser = userRepository.findById(currentUserId);
+            Optional<User> currentUser = userLookupService.findById(currentUserId);
             if (currentUser.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of(
+                return jsonStreamWriter.value(HttpStatus.BAD_REQUEST, Map.of(
                     "status", "error",
                     "message", "Current user not found"
                 ));
             }
 
-            List<String> friendIds = currentUser.get().getFriendIds();
-            System.out.println("Current user's friends: " + friendIds);
-
-            List<Map<String, Object>> users = userRepository.findAll().stream()
-                .filter(user -> !user.getId().equals(currentUserId)) // Exclude current user
-                .filter(user -> !friendIds.contains(user.getId())) // Exclude friends
-                .map(user -> {
-                    Map<String, Object> userMap = new HashMap<>();
-                    userMap.put("id", user.getId());
-                    userMap.put("username", user.getUsername());
-                    userMap.put("email", user.getEmail());
-                    userMap.put("firstName", user.getFirstName());
-                    userMap.put("lastName", user.getLastName());
-                    return userMap;
-                })
-                .collect(Collectors.toList());
-
-            System.out.println("Found " + users.size() + " non-friend users");
-
-            return ResponseEntity.ok(Map.of(
-                "status", "success",
-                "users", users
-            ));
+            // Exclude the current user and their friends in the query itself
+            List<String> excludedIds = new ArrayList<>(friendGraph.friendIds(currentUserId));
+            excludedIds.add(currentUserId);
+
+            int pageNumber = page != null && page > 0 ? page : 0;
+            int pageSize = UserSearchService.pageSize(size);
+
+            // Users are written straight from the cursor; the extra row only sets hasMore
+            return jsonStreamWriter.stream(json -> {
+                json.writeStartObject();
+                json.writeStringField("status", "success");
+                json.writeArrayFieldStart("users");
+                int written = 0;
+                boolean hasMore = false;
+                try (Stream<User> matches = userSearchService.searchStream(q, excludedIds, pageNumber, pageSize)) {
+                    Iterator<User> it = matches.iterator();
+                    while (it.hasNext()) {
+                        User user = it.next();
+                        if (written == pageSize) {
+                            hasMore = true;
+                            break;
+                        }
+                        json.writeObject(UserSummaryDto.of(user));
+                        written++;
+                    }
+                }
+                json.writeEndArray();
+                json.writeNumberField("page", pageNumber);
+                json.writeBooleanField("hasMore", hasMore);
+                json.writeEndObject();
+            });
         } catch (Exception e) {
-            System.err.println("Error fetching users: " + e.getMessage());
-            return ResponseEntity.badRequest().body(Map.of(
+            log.warn("users.search outcome=error userId={}", currentUserId, e);
+            return jsonStreamWriter.value(HttpStatus.BAD_REQUEST, Map.of(
                 "status", "error",
                 "message", "Failed to fetch users: " + e.getMessage()
             ));
@@ -0,0 +1,18 @@
+package com.example.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One message as returned by the history endpoints; senderUsername is only set for groups
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MessageDto(
+    String id,
+    Long seq,
+    String senderId,
+    String senderUsername,
+    String text,
+    LocalDateTime timestamp,
+    String status
+) {
+}
@@ -0,0 +1,17 @@
+package com.example.dto;
+
+import com.example.model.User;
+
+// Public fields of a user as returned by the user search
+public record UserSummaryDto(
+    String id,
+    String username,
+    String email,
+    String firstName,
+    String lastName
+) {
+    public static UserSummaryDto of(User user) {
+        return new UserSummaryDto(user.getId(), user.getUsername(), user.getEmail(),
+            user.getFirstName(), user.getLastName());
+    }
+}
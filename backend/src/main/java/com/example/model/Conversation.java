@@ -1,17 +1,33 @@
 package com.example.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Document(collection = "conversations")
+@CompoundIndex(name = "participants_last_message", def = "{ 'participants': 1, 'lastMessageAt': -1 }")
 public class Conversation {
     @Id
     private String conversationId;
     private List<String> participants;
+    // Sorted participant ids joined by ':', unique per direct conversation
+    @Indexed(unique = true, sparse = true)
+    private String pairKey;
     private List<Message> messages;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private String lastSenderId;
+    private Map<String, Integer> unreadCounts;
+    // seq of the newest message, and each participant's "received/read up to" watermarks
+    private long messageSeq;
+    private Map<String, Long> deliveredSeq;
+    private Map<String, Long> readSeq;
     private String id;
 
     public Conversation() {
@@ -40,6 +56,14 @@ public class Conversation {
         this.participants = participants;
     }
 
+    public String getPairKey() {
+        return pairKey;
+    }
+
+    public void setPairKey(String pairKey) {
+        this.pairKey = pairKey;
+    }
+
     public List<Message> getMessages() {
         return messages;
     }
@@ -56,11 +80,70 @@ public class Conversation {
         this.id = id;
     }
 
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public LocalDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(LocalDateTime lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public String getLastSenderId() {
+        return lastSenderId;
+    }
+
+    public void setLastSenderId(String lastSenderId) {
+        this.lastSenderId = lastSenderId;
+    }
+
+    public Map<String, Integer> getUnreadCounts() {
+        return unreadCounts != null ? unreadCounts : new HashMap<>();
+    }
+
+    public void setUnreadCounts(Map<String, Integer> unreadCounts) {
+        this.unreadCounts = unreadCounts;
+    }
+
+    public long getMessageSeq() {
+        return messageSeq;
+    }
+
+    public void setMessageSeq(long messageSeq) {
+        this.messageSeq = messageSeq;
+    }
+
+    public Map<String, Long> getDeliveredSeq() {
+        return deliveredSeq != null ? deliveredSeq : new HashMap<>();
+    }
+
+    public void setDeliveredSeq(Map<String, Long> deliveredSeq) {
+        this.deliveredSeq = deliveredSeq;
+    }
+
+    public Map<String, Long> getReadSeq() {
+        return readSeq != null ? readSeq : new HashMap<>();
+    }
+
+    public void setReadSeq(Map<String, Long> readSeq) {
+        this.readSeq = readSeq;
+    }
+
     public static class Message {
+        private String id;
         private String senderId;
         private String text;
         private LocalDateTime timestamp;
         private String status;
+        // Position in the conversation/group; null for messages stored before sequencing
+        private Long seq;
 
         public Message() {}
 
@@ -71,6 +154,14 @@ public class Conversation {
             this.status = status;
         }
 
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
         public String getSenderId() {
             return senderId;
         }
@@ -102,5 +193,13 @@ public class Conversation {
         public void setStatus(String status) {
             this.status = status;
         }
+
+        public Long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(Long seq) {
+            this.seq = seq;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package com.example.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// Outbox entry for an unfriend: written before either friend list is touched and deleted
+// once both are updated, so a removal left behind is replayed by FriendshipService
+@Document(collection = "friend_removals")
+public class FriendRemoval {
+    @Id
+    private String id;
+    private String userId;
+    private String friendId;
+    @Indexed
+    private LocalDateTime requestedAt;
+
+    public FriendRemoval() {
+    }
+
+    public FriendRemoval(String userId, String friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+        this.requestedAt = LocalDateTime.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFriendId() {
+        return friendId;
+    }
+
+    public void setFriendId(String friendId) {
+        this.friendId = friendId;
+    }
+
+    public LocalDateTime getRequestedAt() {
+        return requestedAt;
+    }
+
+    public void setRequestedAt(LocalDateTime requestedAt) {
+        this.requestedAt = requestedAt;
+    }
+}
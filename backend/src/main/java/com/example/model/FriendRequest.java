@@ -1,10 +1,18 @@
 package com.example.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
 @Document(collection = "friend_requests")
+@CompoundIndexes({
+    @CompoundIndex(name = "sender_receiver", def = "{ 'senderId': 1, 'receiverId': 1 }"),
+    @CompoundIndex(name = "receiver_status", def = "{ 'receiverId': 1, 'status': 1 }"),
+    @CompoundIndex(name = "status_accepted_at", def = "{ 'status': 1, 'acceptedAt': 1 }")
+})
 public class FriendRequest {
     @Id
     private String id;
@@ -12,7 +20,11 @@ public class FriendRequest {
     private String receiverId;
     private LocalDateTime requestDate;
     private String status; // PENDING, ACCEPTED, REJECTED
+    @Indexed(unique = true)
     private String requestToken;
+    // Set when the request is claimed for acceptance; the request is deleted once both
+    // friend lists are updated, so an ACCEPTED request left behind is replayed by FriendshipService
+    private LocalDateTime acceptedAt;
 
     public FriendRequest() {
     }
@@ -72,4 +84,12 @@ public class FriendRequest {
     public void setRequestToken(String requestToken) {
         this.requestToken = requestToken;
     }
-} 
\ No newline at end of file
+
+    public LocalDateTime getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    public void setAcceptedAt(LocalDateTime acceptedAt) {
+        this.acceptedAt = acceptedAt;
+    }
+}
@@ -1,20 +1,31 @@
 package com.example.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Document(collection = "groups")
+@CompoundIndex(name = "members_last_message", def = "{ 'memberIds': 1, 'lastMessageAt': -1 }")
 public class Group {
     @Id
     private String groupId;
     private String name;
     private String creatorId;
     private List<String> memberIds;
+    // Legacy embedded history; messages now live in message_buckets keyed by the group id
     private List<GroupMessage> messages;
     private LocalDateTime createdAt;
+    // Number of messages sent since sequencing began; the seq of the newest message
+    private long messageSeq;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private String lastSenderId;
+    private Map<String, Integer> unreadCounts;
 
     public Group() {
         this.memberIds = new ArrayList<>();
@@ -23,10 +34,13 @@ public class Group {
     }
 
     public static class GroupMessage {
+        private String id;
         private String senderId;
         private String text;
         private LocalDateTime timestamp;
         private String status;
+        // Position in the conversation/group; null for messages stored before sequencing
+        private Long seq;
 
         public GroupMessage() {}
 
@@ -38,6 +52,14 @@ public class Group {
         }
 
         // Getters and Setters
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
         public String getSenderId() {
             return senderId;
         }
@@ -69,6 +91,14 @@ public class Group {
         public void setStatus(String status) {
             this.status = status;
         }
+
+        public Long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(Long seq) {
+            this.seq = seq;
+        }
     }
 
     // Getters and Setters
@@ -112,6 +142,14 @@ public class Group {
         this.messages = messages;
     }
 
+    public long getMessageSeq() {
+        return messageSeq;
+    }
+
+    public void setMessageSeq(long messageSeq) {
+        this.messageSeq = messageSeq;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -119,4 +157,36 @@ public class Group {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
-} 
\ No newline at end of file
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public LocalDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(LocalDateTime lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public String getLastSenderId() {
+        return lastSenderId;
+    }
+
+    public void setLastSenderId(String lastSenderId) {
+        this.lastSenderId = lastSenderId;
+    }
+
+    public Map<String, Integer> getUnreadCounts() {
+        return unreadCounts != null ? unreadCounts : new HashMap<>();
+    }
+
+    public void setUnreadCounts(Map<String, Integer> unreadCounts) {
+        this.unreadCounts = unreadCounts;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// One member's progress through a group's messages. Acknowledgements only ever move the
+// watermarks forward ($max), so a member's state is a single small document no matter
+// how many messages they receive, and unread = group.messageSeq - readSeq.
+@Document(collection = "group_receipts")
+public class GroupReceipt {
+    @Id
+    private String id; // groupId + ":" + userId
+    private String groupId;
+    private String userId;
+    private long deliveredSeq;
+    private long readSeq;
+    private LocalDateTime updatedAt;
+
+    public GroupReceipt() {
+    }
+
+    public static String idFor(String groupId, String userId) {
+        return groupId + ":" + userId;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public long getDeliveredSeq() {
+        return deliveredSeq;
+    }
+
+    public void setDeliveredSeq(long deliveredSeq) {
+        this.deliveredSeq = deliveredSeq;
+    }
+
+    public long getReadSeq() {
+        return readSeq;
+    }
+
+    public void setReadSeq(long readSeq) {
+        this.readSeq = readSeq;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fixed-size slice of a conversation's or group's history. New messages are $push-ed into the
+// newest bucket that still has room, so a send never rewrites older history.
+@Document(collection = "message_buckets")
+@CompoundIndexes({
+    @CompoundIndex(name = "conversation_count", def = "{ 'conversationId': 1, 'count': 1 }"),
+    // Page walks: each sorts on the middle field and filters on the last one within the index
+    @CompoundIndex(name = "conversation_first_last_ts", def = "{ 'conversationId': 1, 'firstTimestamp': 1, 'lastTimestamp': 1 }"),
+    @CompoundIndex(name = "conversation_last_first_ts", def = "{ 'conversationId': 1, 'lastTimestamp': 1, 'firstTimestamp': 1 }")
+})
+public class MessageBucket {
+    @Id
+    private String id;
+    private String conversationId; // conversation or group id
+    private int count;
+    private LocalDateTime firstTimestamp;
+    private LocalDateTime lastTimestamp;
+    private List<Conversation.Message> messages;
+
+    public MessageBucket() {
+        this.messages = new ArrayList<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public LocalDateTime getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public void setFirstTimestamp(LocalDateTime firstTimestamp) {
+        this.firstTimestamp = firstTimestamp;
+    }
+
+    public LocalDateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public void setLastTimestamp(LocalDateTime lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public List<Conversation.Message> getMessages() {
+        return messages != null ? messages : new ArrayList<>();
+    }
+
+    public void setMessages(List<Conversation.Message> messages) {
+        this.messages = messages;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// What a client had been sent as of one sync; its id is the opaque sync token. Each sync
+// writes a new checkpoint, so a client retrying with an older token still gets a delta.
+@Document(collection = "sync_checkpoints")
+public class SyncCheckpoint {
+    @Id
+    private String id;
+    private String userId;
+    // Expired checkpoints make the client fall back to a full refetch
+    @Indexed(expireAfter = "30d")
+    private LocalDateTime createdAt;
+    private List<Position> conversations;
+    private List<Position> groups;
+    private List<String> friendIds;
+    private List<String> pendingRequestTokens;
+
+    public SyncCheckpoint() {
+        this.conversations = new ArrayList<>();
+        this.groups = new ArrayList<>();
+        this.friendIds = new ArrayList<>();
+        this.pendingRequestTokens = new ArrayList<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public List<Position> getConversations() {
+        return conversations != null ? conversations : new ArrayList<>();
+    }
+
+    public void setConversations(List<Position> conversations) {
+        this.conversations = conversations;
+    }
+
+    public List<Position> getGroups() {
+        return groups != null ? groups : new ArrayList<>();
+    }
+
+    public void setGroups(List<Position> groups) {
+        this.groups = groups;
+    }
+
+    public List<String> getFriendIds() {
+        return friendIds != null ? friendIds : new ArrayList<>();
+    }
+
+    public void setFriendIds(List<String> friendIds) {
+        this.friendIds = friendIds;
+    }
+
+    public List<String> getPendingRequestTokens() {
+        return pendingRequestTokens != null ? pendingRequestTokens : new ArrayList<>();
+    }
+
+    public void setPendingRequestTokens(List<String> pendingRequestTokens) {
+        this.pendingRequestTokens = pendingRequestTokens;
+    }
+
+    // How far the client has been sent one conversation or group
+    public static class Position {
+        private String id;
+        // Highest message seq sent, and the page cursor of that message (null right after a reset)
+        private long seq;
+        private String cursor;
+        // Hash of the group's member ids; unused for conversations
+        private int membersVersion;
+
+        public Position() {}
+
+        public Position(String id, long seq, String cursor, int membersVersion) {
+            this.id = id;
+            this.seq = seq;
+            this.cursor = cursor;
+            this.membersVersion = membersVersion;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(long seq) {
+            this.seq = seq;
+        }
+
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
+
+        public int getMembersVersion() {
+            return membersVersion;
+        }
+
+        public void setMembersVersion(int membersVersion) {
+            this.membersVersion = membersVersion;
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.example.model;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
 
 @Document(collection = "users")
+// Search matches one prefix and sorts by username, so both are served by this index
+@CompoundIndex(name = "search_prefix_username", def = "{ 'searchPrefixes': 1, 'username': 1 }")
 public class User {
     @Id
     private String id;
@@ -21,6 +25,12 @@ public class User {
     private String lastName;
     private List<String> friendIds;
 
+    // Lower-cased prefixes of username/firstName/lastName, maintained by UserSearchService
+    private List<String> searchPrefixes;
+
+    // Last change to the public profile fields, for incremental sync
+    private LocalDateTime updatedAt;
+
     public User() {
         this.friendIds = new ArrayList<>();
     }
@@ -91,4 +101,20 @@ public class User {
     public void setFriendIds(List<String> friendIds) {
         this.friendIds = friendIds != null ? friendIds : new ArrayList<>();
     }
-}
\ No newline at end of file
+
+    public List<String> getSearchPrefixes() {
+        return searchPrefixes;
+    }
+
+    public void setSearchPrefixes(List<String> searchPrefixes) {
+        this.searchPrefixes = searchPrefixes;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
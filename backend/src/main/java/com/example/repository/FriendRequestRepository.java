@@ -11,7 +11,12 @@ import java.util.Optional;
 public interface FriendRequestRepository extends MongoRepository<FriendRequest, String> {
     List<FriendRequest> findBySenderIdAndReceiverId(String senderId, String receiverId);
     List<FriendRequest> findByReceiverIdAndStatus(String receiverId, String status);
-    List<FriendRequest> findByStatusAndSenderIdOrReceiverId(String status, String userId, String userId2);
+
+    // Derived "StatusAndSenderIdOrReceiverId" binds as (status AND sender) OR receiver,
+    // so the status filter has to wrap the $or explicitly
+    @Query("{ 'status': ?0, $or: [ { 'senderId': ?1 }, { 'receiverId': ?1 } ] }")
+    List<FriendRequest> findByStatusForUser(String status, String userId);
+
     Optional<FriendRequest> findByRequestToken(String requestToken);
     
     // Add this method to find all pending requests for a user
@@ -0,0 +1,10 @@
+package com.example.repository.reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.model.Conversation;
+
+@Repository
+public interface ReactiveConversationRepository extends ReactiveMongoRepository<Conversation, String> {
+}
@@ -0,0 +1,14 @@
+package com.example.repository.reactive;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.model.Group;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ReactiveGroupRepository extends ReactiveMongoRepository<Group, String> {
+    @Query(value = "{ 'memberIds': ?0 }", fields = "{ 'messages': 0 }")
+    Flux<Group> findByMember(String userId);
+}
@@ -0,0 +1,17 @@
+package com.example.repository.reactive;
+
+import java.util.Collection;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.model.User;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, String> {
+    // Several users in one query, without the password hash and search prefixes
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'password': 0, 'searchPrefixes': 0 }")
+    Flux<User> findProfilesByIds(Collection<String> ids);
+}
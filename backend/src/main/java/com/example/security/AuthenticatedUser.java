@@ -0,0 +1,39 @@
+package com.example.security;
+
+import java.util.Date;
+
+// The caller of the current request, as established by JwtAuthenticationFilter.
+// Controllers receive it with @RequestAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE).
+public class AuthenticatedUser {
+    public static final String REQUEST_ATTRIBUTE = "authenticatedUser";
+
+    private final String userId;
+    private final String email;
+    private final Date expiresAt;
+
+    public AuthenticatedUser(String userId, String email, Date expiresAt) {
+        this.userId = userId;
+        this.email = email;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.before(new Date());
+    }
+
+    public boolean is(String userId) {
+        return this.userId != null && this.userId.equals(userId);
+    }
+}
@@ -1,47 +1,257 @@
 package com.example.security;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Ciphertexts come in two formats:
+//   legacy  base64(AES/ECB(plaintext)) under encryption.legacy-key
+//   v2      "v2:" + keyId + ":" + base64(nonce || AES/GCM(plaintext) || tag)
+// Base64 never contains ':', so the two cannot be confused. Everything new is written as v2
+// under encryption.active-key-id, which must name a key in encryption.keys or the context
+// fails to start. Legacy data is only ever decrypted, until ReencryptionJob has rewritten
+// it; every key in the ring stays readable so rotation is just "add a key, make it active,
+// let ReencryptionJob catch up".
 @Component
 public class EncryptionUtil {
-    // Use a 16, 24, or 32 byte key for AES-128, AES-192, or AES-256
-private static final String SECRET_KEY = "${ENCRYPTION_KEY}"; // exactly 16 characters    private static final String ALGORITHM = "AES/ECB/PKCS5Padding";
-    private final SecretKeySpec secretKeySpec;
+    private static final String ALGORITHM = "AES/ECB/PKCS5Padding";
+    private static final String GCM_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String ENVELOPE_VERSION = "v2";
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    // Below this size the fork/join overhead outweighs decrypting on the calling thread
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final int MAX_POOLED_CIPHERS = 64;
+
+    // Null when no legacy key is configured, i.e. there is no ECB data left to read
+    private final SecretKeySpec legacyKey;
+    private final Map<String, SecretKey> keyRing;
+    private final String activeKeyId;
+    private final SecureRandom random = new SecureRandom();
+    // Cipher.getInstance + init dominate the cost of encrypting a short message, so keep
+    // instances around. A pool rather than a ThreadLocal, because with virtual threads
+    // every request runs on a fresh thread. ECB ciphers stay initialized; GCM ciphers need
+    // a fresh nonce per message and are re-initialized on every use.
+    private final Queue<Cipher> decryptCiphers = new ConcurrentLinkedQueue<>();
+    private final Queue<Cipher> gcmCiphers = new ConcurrentLinkedQueue<>();
+
+    // crypto.cipher, per operation and ciphertext format
+    private final Timer legacyDecryptTimer;
+    private final Timer envelopeEncryptTimer;
+    private final Timer envelopeDecryptTimer;
+
+    public EncryptionUtil(String keys, String activeKeyId, MeterRegistry meterRegistry) {
+        this(keys, activeKeyId, null, meterRegistry);
+    }
+
+    // keys: comma separated "keyId:base64Key" pairs
+    // legacyKey: the raw 16, 24 or 32 character key older ECB ciphertexts were written under
+    @Autowired
+    public EncryptionUtil(@Value("${encryption.keys:}") String keys,
+                          @Value("${encryption.active-key-id:}") String activeKeyId,
+                          @Value("${encryption.legacy-key:}") String legacyKey,
+                          MeterRegistry meterRegistry) {
+        this.keyRing = parseKeys(keys);
+        this.legacyKey = parseLegacyKey(legacyKey);
+
+        if (activeKeyId == null || activeKeyId.isBlank()) {
+            throw new IllegalStateException("encryption.active-key-id must be set to a key in encryption.keys");
+        }
+        this.activeKeyId = activeKeyId.trim();
+        if (!keyRing.containsKey(this.activeKeyId)) {
+            throw new IllegalStateException("Active encryption key '" + this.activeKeyId + "' is not in encryption.keys");
+        }
 
-    public EncryptionUtil() {
-        byte[] key = SECRET_KEY.getBytes(StandardCharsets.UTF_8);
-        this.secretKeySpec = new SecretKeySpec(key, "AES");
+        this.legacyDecryptTimer = cipherTimer(meterRegistry, "decrypt", "legacy");
+        this.envelopeEncryptTimer = cipherTimer(meterRegistry, "encrypt", ENVELOPE_VERSION);
+        this.envelopeDecryptTimer = cipherTimer(meterRegistry, "decrypt", ENVELOPE_VERSION);
     }
 
     public String encrypt(String data) {
+        return envelopeEncryptTimer.record(() -> encryptEnvelope(data));
+    }
+
+    public String decrypt(String encryptedData) {
+        if (encryptedData.startsWith(ENVELOPE_VERSION + ":")) {
+            return envelopeDecryptTimer.record(() -> decryptEnvelope(encryptedData));
+        }
+        return legacyDecryptTimer.record(() -> decryptLegacy(encryptedData));
+    }
+
+    private String decryptLegacy(String encryptedData) {
+        if (legacyKey == null) {
+            throw new RuntimeException("Failed to decrypt data: legacy ciphertext but encryption.legacy-key is not set");
+        }
+        Cipher cipher = borrowLegacy();
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
-            
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
-            e.printStackTrace(); // Log the full stack trace
-            System.out.println("Encryption error: " + e.getMessage());
+            cipher = null; // Don't return a cipher in an unknown state to the pool
+            throw new RuntimeException("Failed to decrypt data", e);
+        } finally {
+            release(decryptCiphers, cipher);
+        }
+    }
+
+    // Decrypts a whole page of history; large batches are spread over the common pool.
+    // The result has the same order as the input.
+    public List<String> decryptAll(List<String> encryptedData) {
+        if (encryptedData.size() < PARALLEL_THRESHOLD) {
+            return encryptedData.stream().map(this::decrypt).collect(Collectors.toList());
+        }
+        return encryptedData.parallelStream().map(this::decrypt).collect(Collectors.toList());
+    }
+
+    public List<String> encryptAll(List<String> data) {
+        if (data.size() < PARALLEL_THRESHOLD) {
+            return data.stream().map(this::encrypt).collect(Collectors.toList());
+        }
+        return data.parallelStream().map(this::encrypt).collect(Collectors.toList());
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    // True if the value is already in the format encrypt() would produce today
+    public boolean isCurrent(String encryptedData) {
+        return encryptedData.startsWith(ENVELOPE_VERSION + ":" + activeKeyId + ":");
+    }
+
+    public String reencrypt(String encryptedData) {
+        return encrypt(decrypt(encryptedData));
+    }
+
+    private String encryptEnvelope(String data) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+
+        Cipher cipher = borrowGcm();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, keyRing.get(activeKeyId), new GCMParameterSpec(TAG_LENGTH_BITS, nonce));
+            byte[] sealed = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            byte[] payload = ByteBuffer.allocate(nonce.length + sealed.length).put(nonce).put(sealed).array();
+            return ENVELOPE_VERSION + ":" + activeKeyId + ":" + Base64.getEncoder().encodeToString(payload);
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Failed to encrypt data", e);
+        } finally {
+            release(gcmCiphers, cipher);
         }
     }
 
-    public String decrypt(String encryptedData) {
+    private String decryptEnvelope(String envelope) {
+        int keyEnd = envelope.indexOf(':', ENVELOPE_VERSION.length() + 1);
+        if (keyEnd < 0) {
+            throw new RuntimeException("Failed to decrypt data: malformed envelope");
+        }
+        String keyId = envelope.substring(ENVELOPE_VERSION.length() + 1, keyEnd);
+        SecretKey key = keyRing.get(keyId);
+        if (key == null) {
+            throw new RuntimeException("Failed to decrypt data: unknown key id " + keyId);
+        }
+
+        byte[] payload = Base64.getDecoder().decode(envelope.substring(keyEnd + 1));
+        Cipher cipher = borrowGcm();
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
-            
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
-            return new String(decryptedBytes);
-        } catch (Exception e) {
-            e.printStackTrace(); // Log the full stack trace
-            System.out.println("Decryption error: " + e.getMessage());
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, NONCE_LENGTH));
+            byte[] plain = cipher.doFinal(payload, NONCE_LENGTH, payload.length - NONCE_LENGTH);
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            // Includes AEADBadTagException: the ciphertext was tampered with or the key is wrong
             throw new RuntimeException("Failed to decrypt data", e);
+        } finally {
+            release(gcmCiphers, cipher);
+        }
+    }
+
+    private static Timer cipherTimer(MeterRegistry registry, String operation, String format) {
+        return Timer.builder("crypto.cipher")
+            .tag("operation", operation)
+            .tag("format", format)
+            .register(registry);
+    }
+
+    private Cipher borrowLegacy() {
+        Cipher cipher = decryptCiphers.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        try {
+            cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, legacyKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to initialize cipher", e);
+        }
+    }
+
+    private Cipher borrowGcm() {
+        Cipher cipher = gcmCiphers.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        try {
+            return Cipher.getInstance(GCM_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to initialize cipher", e);
+        }
+    }
+
+    // doFinal leaves the cipher reset to its initialized state, so it can be reused as is.
+    // The size check is racy, which only means the pool may briefly exceed its cap.
+    private void release(Queue<Cipher> pool, Cipher cipher) {
+        if (cipher != null && pool.size() < MAX_POOLED_CIPHERS) {
+            pool.offer(cipher);
+        }
+    }
+
+    private static Map<String, SecretKey> parseKeys(String keys) {
+        Map<String, SecretKey> ring = new HashMap<>();
+        if (keys == null || keys.isBlank()) {
+            return ring;
+        }
+        for (String entry : keys.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException("encryption.keys entries must look like keyId:base64Key");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            byte[] key = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            if (key.length != 16 && key.length != 24 && key.length != 32) {
+                throw new IllegalStateException("Encryption key '" + keyId + "' must be 16, 24 or 32 bytes");
+            }
+            ring.put(keyId, new SecretKeySpec(key, "AES"));
+        }
+        return ring;
+    }
+
+    private static SecretKeySpec parseLegacyKey(String legacyKey) {
+        if (legacyKey == null || legacyKey.isEmpty()) {
+            return null;
+        }
+        byte[] key = legacyKey.getBytes(StandardCharsets.UTF_8);
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalStateException("encryption.legacy-key must be 16, 24 or 32 bytes");
         }
+        return new SecretKeySpec(key, "AES");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package com.example.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.model.User;
+import com.example.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Authenticates every request once from its bearer token (or ?token= for the WebSocket
+// handshake, where browsers cannot set headers). Verified tokens are cached by SHA-256
+// hash, so a repeat request costs a hash and a map lookup rather than an HMAC check and
+// a JSON parse. With security.jwt.enforce=false requests without a valid token are let
+// through unauthenticated, which is meant for migrating clients only.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final List<String> PUBLIC_PATHS = List.of("/login", "/register", "/validate");
+    // Actuator endpoints, mounted at the root, with their sub-paths (/metrics/{name}).
+    // Load balancers and metric scrapers call them without a user token.
+    private static final List<String> ACTUATOR_PATHS = List.of("/health", "/metrics");
+
+    private final JwtUtil jwtUtil;
+    private final UserRepository userRepository;
+    private final boolean enforce;
+    private final Cache<String, AuthenticatedUser> verifiedTokens;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserRepository userRepository,
+                                   @Value("${security.jwt.enforce:true}") boolean enforce,
+                                   @Value("${security.jwt.cache-size:50000}") long cacheSize,
+                                   @Value("${security.jwt.cache-ttl-seconds:600}") long cacheTtlSeconds,
+                                   MeterRegistry meterRegistry) {
+        this.jwtUtil = jwtUtil;
+        this.userRepository = userRepository;
+        this.enforce = enforce;
+        this.verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = extractToken(request);
+        AuthenticatedUser user = token == null ? null : authenticate(token);
+
+        if (user == null && enforce) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Missing or invalid token\"}");
+            return;
+        }
+
+        if (user != null) {
+            request.setAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE, user);
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return "OPTIONS".equalsIgnoreCase(request.getMethod())
+            || PUBLIC_PATHS.contains(path)
+            || ACTUATOR_PATHS.stream().anyMatch(actuator -> path.equals(actuator) || path.startsWith(actuator + "/"));
+    }
+
+    private AuthenticatedUser authenticate(String token) {
+        String tokenHash = hash(token);
+        AuthenticatedUser cached = verifiedTokens.getIfPresent(tokenHash);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                return cached;
+            }
+            verifiedTokens.invalidate(tokenHash);
+            return null;
+        }
+
+        Claims claims = jwtUtil.parseValidClaims(token);
+        if (claims == null) {
+            return null;
+        }
+
+        // Tokens issued before the userId claim existed only carry the email
+        String userId = claims.get(JwtUtil.USER_ID_CLAIM, String.class);
+        if (userId == null) {
+            userId = userRepository.findByEmail(claims.getSubject()).map(User::getId).orElse(null);
+            if (userId == null) {
+                return null;
+            }
+        }
+
+        AuthenticatedUser user = new AuthenticatedUser(userId, claims.getSubject(), claims.getExpiration());
+        verifiedTokens.put(tokenHash, user);
+        return user;
+    }
+
+    private static String extractToken(HttpServletRequest request) {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            String token = header.substring("Bearer ".length()).trim();
+            return token.isEmpty() || "null".equals(token) ? null : token;
+        }
+        return request.getParameter("token");
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.model.User;
+
+// PBKDF2-HMAC-SHA256 password hashes, stored as
+//   pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>
+// Hashing is deliberately expensive, so it runs on a dedicated bounded pool: a login spike
+// queues (and past security.password.queue-capacity is rejected with
+// RejectedExecutionException) instead of starving every other request of CPU.
+// Values written before hashing existed (EncryptionUtil ciphertext from /register or
+// PasswordUtil Base64 from /profile/update-password) still verify and are replaced by
+// upgradeIfNeeded after a successful login.
+// A login for an unknown email calls verifyUnknownUser, which spends the same hashing work
+// as a real check, so response times do not tell registered emails from unregistered ones.
+@Component
+public class PasswordHashingService {
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final String KDF = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH_BITS = 256;
+    private static final byte[] DUMMY_SALT = new byte[SALT_LENGTH];
+
+    private final int iterations;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor pool;
+    private final SecureRandom random = new SecureRandom();
+    private final EncryptionUtil encryptionUtil;
+    private final PasswordUtil passwordUtil;
+    private final MongoTemplate mongoTemplate;
+
+    public PasswordHashingService(EncryptionUtil encryptionUtil, PasswordUtil passwordUtil,
+                                  MongoTemplate mongoTemplate,
+                                  @Value("${security.password.iterations:210000}") int iterations,
+                                  @Value("${security.password.threads:0}") int threads,
+                                  @Value("${security.password.queue-capacity:200}") int queueCapacity,
+                                  @Value("${security.password.timeout-ms:5000}") long timeoutMs) {
+        this.encryptionUtil = encryptionUtil;
+        this.passwordUtil = passwordUtil;
+        this.mongoTemplate = mongoTemplate;
+        this.iterations = iterations;
+        this.timeoutMs = timeoutMs;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public String hash(String rawPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = submit(() -> pbkdf2(rawPassword, salt, iterations));
+        return PREFIX + "$" + iterations + "$"
+            + Base64.getEncoder().encodeToString(salt) + "$"
+            + Base64.getEncoder().encodeToString(hash);
+    }
+
+    public boolean verify(String rawPassword, String storedPassword) {
+        if (rawPassword == null || storedPassword == null) {
+            return false;
+        }
+        if (!storedPassword.startsWith(PREFIX + "$")) {
+            return verifyLegacy(rawPassword, storedPassword);
+        }
+
+        String[] parts = storedPassword.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int storedIterations = Integer.parseInt(parts[1]);
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        byte[] actual = submit(() -> pbkdf2(rawPassword, salt, storedIterations));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    // Always false, after the same work verify() does against a current hash
+    public boolean verifyUnknownUser(String rawPassword) {
+        if (rawPassword != null) {
+            submit(() -> pbkdf2(rawPassword, DUMMY_SALT, iterations));
+        }
+        return false;
+    }
+
+    // True for legacy values and hashes made with fewer iterations than currently configured
+    public boolean needsRehash(String storedPassword) {
+        if (storedPassword == null || !storedPassword.startsWith(PREFIX + "$")) {
+            return true;
+        }
+        String[] parts = storedPassword.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    // Call only after verify succeeded. The write is conditional on the old value so a password
+    // change racing with the login is never overwritten.
+    public void upgradeIfNeeded(User user, String rawPassword) {
+        String current = user.getPassword();
+        if (!needsRehash(current)) {
+            return;
+        }
+        String upgraded = hash(rawPassword);
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(user.getId()).and("password").is(current)),
+            new Update().set("password", upgraded),
+            User.class);
+        user.setPassword(upgraded);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private boolean verifyLegacy(String rawPassword, String storedPassword) {
+        byte[] raw = rawPassword.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (MessageDigest.isEqual(raw, encryptionUtil.decrypt(storedPassword).getBytes(StandardCharsets.UTF_8))) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            // Not an EncryptionUtil value, try the PasswordUtil encoding
+        }
+        try {
+            return MessageDigest.isEqual(raw, passwordUtil.decrypt(storedPassword).getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private byte[] submit(Callable<byte[]> task) {
+        Future<byte[]> future = pool.submit(task);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password hashing timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static byte[] pbkdf2(String rawPassword, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, HASH_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(KDF).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 not available", e);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.config.MongoConfig;
+import com.example.model.Conversation;
+import com.example.model.MessageBucket;
+
+@Service
+public class BucketedMessageStore implements MessageStore {
+
+    private final MongoTemplate mongoTemplate;
+    // History reads tolerate replication lag, so they may be served by a secondary
+    private final MongoTemplate readTemplate;
+    private final int bucketSize;
+
+    public BucketedMessageStore(MongoTemplate mongoTemplate,
+                                @Qualifier(MongoConfig.SECONDARY_READS) MongoTemplate readTemplate,
+                                @Value("${messages.bucket-size:200}") int bucketSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.readTemplate = readTemplate;
+        this.bucketSize = bucketSize;
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    @Override
+    public void append(String conversationId, Conversation.Message message) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+
+        mongoTemplate.upsert(appendQuery(conversationId, bucketSize), appendUpdate(message), MessageBucket.class);
+    }
+
+    // Push into any bucket of this conversation that still has room; when all are
+    // full the upsert opens a new one. Either way it is a single atomic write.
+    static Query appendQuery(String conversationId, int bucketSize) {
+        return new Query(Criteria.where("conversationId").is(conversationId).and("count").lt(bucketSize));
+    }
+
+    static Update appendUpdate(Conversation.Message message) {
+        return new Update()
+            .push("messages", message)
+            .inc("count", 1)
+            .min("firstTimestamp", message.getTimestamp())
+            .max("lastTimestamp", message.getTimestamp());
+    }
+
+    // Appends several messages per conversation in one bulk write. Each conversation's
+    // messages are pushed together (in chunks of at most a bucket) into a bucket that still
+    // has room for the whole chunk, or into a new one.
+    public void appendAll(Map<String, List<Conversation.Message>> messagesByConversation) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, MessageBucket.class);
+        int operations = 0;
+        for (Map.Entry<String, List<Conversation.Message>> entry : messagesByConversation.entrySet()) {
+            List<Conversation.Message> messages = entry.getValue();
+            for (int start = 0; start < messages.size(); start += bucketSize) {
+                List<Conversation.Message> chunk = messages.subList(start, Math.min(start + bucketSize, messages.size()));
+                LocalDateTime first = null;
+                LocalDateTime last = null;
+                for (Conversation.Message message : chunk) {
+                    if (message.getId() == null) {
+                        message.setId(new ObjectId().toHexString());
+                    }
+                    LocalDateTime timestamp = message.getTimestamp();
+                    first = first == null || timestamp.isBefore(first) ? timestamp : first;
+                    last = last == null || timestamp.isAfter(last) ? timestamp : last;
+                }
+
+                Query query = new Query(Criteria.where("conversationId").is(entry.getKey())
+                    .and("count").lte(bucketSize - chunk.size()));
+                Update update = new Update()
+                    .push("messages").each(chunk.toArray())
+                    .inc("count", chunk.size())
+                    .min("firstTimestamp", first)
+                    .max("lastTimestamp", last);
+                bulk.upsert(query, update);
+                operations++;
+            }
+        }
+        if (operations > 0) {
+            bulk.execute();
+        }
+    }
+
+    // Append that is safe to repeat: skipped if a message with the same id is already stored
+    public void appendIfAbsent(String conversationId, Conversation.Message message) {
+        boolean stored = message.getId() != null && mongoTemplate.exists(
+            new Query(Criteria.where("conversationId").is(conversationId).and("messages.id").is(message.getId())),
+            MessageBucket.class);
+        if (!stored) {
+            append(conversationId, message);
+        }
+    }
+
+    @Override
+    public List<Conversation.Message> findAll(String conversationId) {
+        List<Conversation.Message> messages = new ArrayList<>();
+        for (MessageBucket bucket : readTemplate.find(allQuery(conversationId), MessageBucket.class)) {
+            messages.addAll(bucket.getMessages());
+        }
+        // Two buckets can be open briefly under concurrent sends, so order by timestamp
+        messages.sort(Comparator.comparing(Conversation.Message::getTimestamp,
+            Comparator.nullsFirst(Comparator.naturalOrder())));
+        return messages;
+    }
+
+    @Override
+    public List<Conversation.Message> findPage(String conversationId, MessageCursor before,
+                                               MessageCursor after, int limit) {
+        return findPage(readTemplate, conversationId, before, after, limit);
+    }
+
+    @Override
+    public List<Conversation.Message> findPageFromPrimary(String conversationId, MessageCursor before,
+                                                          MessageCursor after, int limit) {
+        return findPage(mongoTemplate, conversationId, before, after, limit);
+    }
+
+    private List<Conversation.Message> findPage(MongoTemplate template, String conversationId,
+                                                MessageCursor before, MessageCursor after, int limit) {
+        // Walk buckets from the cursor outwards and stop once no further bucket can hold a
+        // message for the page, so the cost depends on the page size rather than the
+        // length of the history
+        PageWalk walk = new PageWalk(before, after, limit);
+        try (Stream<MessageBucket> stream = template.stream(pageQuery(conversationId, before, after), MessageBucket.class)) {
+            Iterator<MessageBucket> buckets = stream.iterator();
+            while (buckets.hasNext()) {
+                MessageBucket bucket = buckets.next();
+                if (!walk.wants(bucket)) {
+                    break;
+                }
+                walk.add(bucket);
+            }
+        }
+        return walk.page();
+    }
+
+    static Query allQuery(String conversationId) {
+        return new Query(Criteria.where("conversationId").is(conversationId))
+            .with(Sort.by(Sort.Direction.ASC, "firstTimestamp"));
+    }
+
+    // Buckets that can hold messages between the cursors, nearest to the cursor first:
+    // newest lastTimestamp first when paging backwards, oldest firstTimestamp first when
+    // paging forwards. That order bounds every bucket still to come, so PageWalk can stop
+    // even though buckets overlap in time. Ordering on the filtered field instead would not:
+    // a long-spanning bucket (migrated or merged history) could still turn up anywhere.
+    //
+    // The filter is on the other timestamp, so the query is pinned to the index that has
+    // the sort field followed by the filter field. Mongo walks that index from the newest
+    // (oldest) bucket and applies the filter to index keys, so paging far from the end
+    // costs one index key per bucket between the end and the cursor, about one per
+    // messages.bucket-size messages, with no document fetch and no in-memory sort for them.
+    static Query pageQuery(String conversationId, MessageCursor before, MessageCursor after) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        Sort sort;
+        String index;
+        if (after != null) {
+            criteria = criteria.and("lastTimestamp").gte(after.getTimestamp());
+            sort = Sort.by(Sort.Direction.ASC, "firstTimestamp");
+            index = "conversation_first_last_ts";
+        } else {
+            if (before != null) {
+                criteria = criteria.and("firstTimestamp").lte(before.getTimestamp());
+            }
+            sort = Sort.by(Sort.Direction.DESC, "lastTimestamp");
+            index = "conversation_last_first_ts";
+        }
+        return new Query(criteria).with(sort).withHint(index).cursorBatchSize(2);
+    }
+
+    // Collects one page from buckets read in pageQuery order. Buckets overlap in time (two
+    // open under concurrent sends, appendAll chunks, migrated and merged histories), so a
+    // filled page does not end the walk: it ends at the first bucket that cannot reach past
+    // the page's outermost message, since every later bucket is bounded by that one.
+    static final class PageWalk {
+        private final MessageCursor before;
+        private final MessageCursor after;
+        private final int limit;
+        // The best `limit` candidates so far; the head is the outermost, i.e. the cutoff
+        private final PriorityQueue<Conversation.Message> kept;
+
+        PageWalk(MessageCursor before, MessageCursor after, int limit) {
+            this.before = before;
+            this.after = after;
+            this.limit = limit;
+            Comparator<Conversation.Message> order = Comparator.comparing(BucketedMessageStore::position);
+            this.kept = new PriorityQueue<>(after != null ? order.reversed() : order);
+        }
+
+        boolean wants(MessageBucket bucket) {
+            if (kept.size() < limit) {
+                return true;
+            }
+            LocalDateTime cutoff = kept.peek().getTimestamp();
+            LocalDateTime reach = after != null ? bucket.getFirstTimestamp() : bucket.getLastTimestamp();
+            if (cutoff == null || reach == null) {
+                return true;
+            }
+            return after != null ? !reach.isAfter(cutoff) : !reach.isBefore(cutoff);
+        }
+
+        void add(MessageBucket bucket) {
+            for (Conversation.Message message : inPage(bucket, before, after)) {
+                kept.add(message);
+                if (kept.size() > limit) {
+                    kept.poll();
+                }
+            }
+        }
+
+        List<Conversation.Message> page() {
+            return MessageCursor.slice(new ArrayList<>(kept), BucketedMessageStore::position, before, after, limit);
+        }
+    }
+
+    static List<Conversation.Message> inPage(MessageBucket bucket, MessageCursor before, MessageCursor after) {
+        List<Conversation.Message> messages = new ArrayList<>();
+        for (Conversation.Message message : bucket.getMessages()) {
+            MessageCursor position = position(message);
+            if ((before == null || position.compareTo(before) < 0)
+                && (after == null || position.compareTo(after) > 0)) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    static MessageCursor position(Conversation.Message message) {
+        return MessageCursor.of(message.getTimestamp(), message.getId());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.model.Conversation;
+import com.example.model.Group;
+import com.example.model.MessageBucket;
+
+// Moves messages still embedded in `conversations` and `groups` documents into message
+// buckets. Bucket ids are derived from the owning document's id, so a run interrupted half
+// way can simply be repeated; the embedded array is only removed once its buckets are written.
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "messages.migration.enabled", havingValue = "true", matchIfMissing = true)
+public class ConversationMessageMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationMessageMigration.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final BucketedMessageStore messageStore;
+
+    public ConversationMessageMigration(MongoTemplate mongoTemplate, BucketedMessageStore messageStore) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageStore = messageStore;
+    }
+
+    // Conversations or groups that still embed messages. No index can serve it, so each
+    // run scans both collections; see messages.migration.enabled.
+    static Query legacyQuery() {
+        return new Query(Criteria.where("messages.0").exists(true));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query legacy = legacyQuery();
+        int migrated = 0;
+
+        try (Stream<Conversation> stream = mongoTemplate.stream(legacy, Conversation.class)) {
+            Iterator<Conversation> conversations = stream.iterator();
+            while (conversations.hasNext()) {
+                Conversation conversation = conversations.next();
+                if (migrate(conversation.getConversationId(), conversation.getMessages(), Conversation.class)) {
+                    migrated++;
+                }
+            }
+        }
+
+        try (Stream<Group> stream = mongoTemplate.stream(legacy, Group.class)) {
+            Iterator<Group> groups = stream.iterator();
+            while (groups.hasNext()) {
+                Group group = groups.next();
+                List<Conversation.Message> messages = group.getMessages().stream()
+                    .map(GroupMessageStore::toStored)
+                    .collect(Collectors.toList());
+                if (migrate(group.getGroupId(), messages, Group.class)) {
+                    migrated++;
+                }
+            }
+        }
+
+        if (migrated > 0) {
+            log.info("migrated conversations and groups to message buckets count={}", migrated);
+        }
+    }
+
+    private boolean migrate(String ownerId, List<Conversation.Message> messages, Class<?> ownerType) {
+        int bucketSize = messageStore.getBucketSize();
+
+        for (int start = 0, index = 0; start < messages.size(); start += bucketSize, index++) {
+            List<Conversation.Message> slice =
+                new ArrayList<>(messages.subList(start, Math.min(start + bucketSize, messages.size())));
+            slice.forEach(message -> {
+                if (message.getId() == null) {
+                    message.setId(new ObjectId().toHexString());
+                }
+            });
+
+            MessageBucket bucket = new MessageBucket();
+            bucket.setId(ownerId + ":legacy:" + index);
+            bucket.setConversationId(ownerId);
+            bucket.setMessages(slice);
+            // Legacy buckets are never appended to, so mark them full
+            bucket.setCount(bucketSize);
+            bucket.setFirstTimestamp(slice.get(0).getTimestamp());
+            bucket.setLastTimestamp(slice.get(slice.size() - 1).getTimestamp());
+            mongoTemplate.save(bucket);
+        }
+
+        // Only drop the embedded array if nobody appended to it while we were copying
+        Query unchanged = new Query(Criteria.where("_id").is(ownerId)
+            .and("messages").size(messages.size()));
+        return mongoTemplate.updateFirst(unchanged, new Update().unset("messages"), ownerType)
+            .getModifiedCount() > 0;
+    }
+}
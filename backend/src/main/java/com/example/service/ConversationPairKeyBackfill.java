@@ -0,0 +1,98 @@
+package com.example.service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.model.Conversation;
+import com.example.model.MessageBucket;
+
+// Sets `pairKey` on direct conversations created before it existed. When two documents
+// exist for the same pair (the old find-or-create could race), the oldest keeps the key
+// and the duplicate's message buckets are moved onto it before the duplicate is removed.
+// Runs after ConversationMessageMigration so no history is still embedded in a duplicate.
+// Disabled with conversations.pair-key-backfill.enabled=false. Each merge is logged, since
+// it moves history from one conversation id to another.
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "conversations.pair-key-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class ConversationPairKeyBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationPairKeyBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public ConversationPairKeyBackfill(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Direct conversations without a pairKey. The pairKey index is sparse, so it cannot
+    // answer $exists: false and each run scans the collection in _id order.
+    static Query missingQuery() {
+        Query missing = new Query(Criteria.where("pairKey").exists(false).and("participants").size(2))
+            .with(Sort.by(Sort.Direction.ASC, "_id"));
+        missing.fields().include("participants");
+        return missing;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int merged = 0;
+        try (Stream<Conversation> stream = mongoTemplate.stream(missingQuery(), Conversation.class)) {
+            Iterator<Conversation> conversations = stream.iterator();
+            while (conversations.hasNext()) {
+                Conversation conversation = conversations.next();
+                List<String> participants = conversation.getParticipants();
+                String pairKey = DirectConversationService.pairKey(participants.get(0), participants.get(1));
+                try {
+                    mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(conversation.getConversationId()).and("pairKey").exists(false)),
+                        new Update().set("pairKey", pairKey),
+                        Conversation.class);
+                } catch (DuplicateKeyException e) {
+                    if (mergeInto(pairKey, conversation.getConversationId())) {
+                        merged++;
+                    }
+                }
+            }
+        }
+
+        if (merged > 0) {
+            log.info("merged duplicate direct conversations count={}", merged);
+        }
+    }
+
+    private boolean mergeInto(String pairKey, String duplicateId) {
+        Conversation canonical = mongoTemplate.findOne(
+            Query.query(Criteria.where("pairKey").is(pairKey)), Conversation.class);
+        boolean stillEmbedded = mongoTemplate.exists(
+            Query.query(Criteria.where("_id").is(duplicateId).and("messages.0").exists(true)), Conversation.class);
+        if (canonical == null || stillEmbedded) {
+            log.warn("skipping duplicate conversation conversationId={} pairKey={}", duplicateId, pairKey);
+            return false;
+        }
+
+        long moved = mongoTemplate.updateMulti(
+            Query.query(Criteria.where("conversationId").is(duplicateId)),
+            new Update().set("conversationId", canonical.getConversationId()),
+            MessageBucket.class).getModifiedCount();
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(duplicateId)), Conversation.class);
+        log.info("merged duplicate conversation conversationId={} into={} pairKey={} buckets={}",
+            duplicateId, canonical.getConversationId(), pairKey, moved);
+        return true;
+    }
+}
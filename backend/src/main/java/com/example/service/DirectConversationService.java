@@ -0,0 +1,67 @@
+package com.example.service;
+
+import java.util.List;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Conversation;
+
+// Resolves the direct conversation between two users through its canonical pairKey.
+// Get-or-create is a single upsert on the unique pairKey index, so concurrent first
+// messages converge on one document instead of each inserting their own.
+@Service
+public class DirectConversationService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public DirectConversationService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public static String pairKey(String userId, String otherUserId) {
+        return userId.compareTo(otherUserId) <= 0
+            ? userId + ":" + otherUserId
+            : otherUserId + ":" + userId;
+    }
+
+    public static List<String> participants(String userId, String otherUserId) {
+        return userId.compareTo(otherUserId) <= 0
+            ? List.of(userId, otherUserId)
+            : List.of(otherUserId, userId);
+    }
+
+    public Conversation getOrCreate(String userId, String otherUserId) {
+        return upsert(userId, otherUserId, new Update());
+    }
+
+    // Get-or-create that also claims the next messageSeq and applies `summary` in the same
+    // write, so recording a message costs one round trip here plus the bucket append
+    public Conversation recordMessage(String senderId, String receiverId, Update summary) {
+        return upsert(senderId, receiverId, summary.inc("messageSeq", 1));
+    }
+
+    private Conversation upsert(String userId, String otherUserId, Update update) {
+        Query query = upsertQuery(userId, otherUserId);
+        update.setOnInsert("participants", participants(userId, otherUserId));
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        try {
+            return mongoTemplate.findAndModify(query, update, options, Conversation.class);
+        } catch (DuplicateKeyException e) {
+            // Two upserts raced to insert; the loser now finds the winner's document
+            return mongoTemplate.findAndModify(query, update, options, Conversation.class);
+        }
+    }
+
+    static Query upsertQuery(String userId, String otherUserId) {
+        Query query = Query.query(Criteria.where("pairKey").is(pairKey(userId, otherUserId)));
+        query.fields().include("participants", "pairKey", "messageSeq");
+        return query;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.model.User;
+
+// In-memory copy of every user's friendIds. User ids are interned to dense ints, and each
+// user's friends are an immutable open-addressing int set, so areFriends is a hash probe
+// and mutual-friend and friend-of-friend queries walk int sets instead of loading users.
+//
+// The graph is loaded from Mongo at startup and reloaded every
+// friends.graph.reload-interval-ms, which picks up edits made by other instances.
+// FriendshipService calls link/unlink after each write, and those calls are replayed onto
+// a reload in progress so none are lost. Until the first load completes, friendIds and
+// mutualFriends answer from UserLookupService and suggestions is empty.
+//
+// Between reloads the graph may miss friendships accepted on another instance, so a "no"
+// from it is confirmed against Mongo before areFriends returns false.
+@Service
+public class FriendGraph {
+
+    private static final Logger log = LoggerFactory.getLogger(FriendGraph.class);
+
+    public record Suggestion(String userId, int mutualCount) {
+    }
+
+    private record Change(String userId, String friendId, boolean linked) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final UserLookupService userLookupService;
+    private final Object writeLock = new Object();
+    private volatile Graph graph;
+    // Non-null while a reload is reading users; guarded by writeLock
+    private List<Change> changesDuringReload;
+
+    public FriendGraph(MongoTemplate mongoTemplate, UserLookupService userLookupService) {
+        this.mongoTemplate = mongoTemplate;
+        this.userLookupService = userLookupService;
+    }
+
+    @Scheduled(fixedDelayString = "${friends.graph.reload-interval-ms:600000}")
+    public void reload() {
+        synchronized (writeLock) {
+            changesDuringReload = new ArrayList<>();
+        }
+        Graph loaded = new Graph();
+        try {
+            try (Stream<User> users = mongoTemplate.stream(reloadQuery(), User.class)) {
+                users.forEach(user -> loaded.setFriends(user.getId(), user.getFriendIds()));
+            }
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                changesDuringReload = null;
+            }
+            throw e;
+        }
+
+        synchronized (writeLock) {
+            for (Change change : changesDuringReload) {
+                loaded.apply(change);
+            }
+            changesDuringReload = null;
+            graph = loaded;
+        }
+        log.info("friends.graph outcome=loaded users={}", loaded.size());
+    }
+
+    // Every user's friendIds: a full scan of users, once per reload interval
+    static Query reloadQuery() {
+        Query query = new Query();
+        query.fields().include("friendIds");
+        return query;
+    }
+
+    // Both are called after the corresponding write to Mongo
+    public void link(String userId, String friendId) {
+        apply(new Change(userId, friendId, true));
+    }
+
+    public void unlink(String userId, String friendId) {
+        apply(new Change(userId, friendId, false));
+    }
+
+    private void apply(Change change) {
+        synchronized (writeLock) {
+            if (changesDuringReload != null) {
+                changesDuringReload.add(change);
+            }
+            Graph current = graph;
+            if (current != null) {
+                current.apply(change);
+            }
+        }
+    }
+
+    public boolean areFriends(String userId, String otherUserId) {
+        if (linked(userId, otherUserId)) {
+            return true;
+        }
+        if (userId == null || otherUserId == null
+                || !mongoTemplate.exists(friendshipQuery(userId, otherUserId), User.class)) {
+            return false;
+        }
+        // Accepted elsewhere since the last reload
+        link(userId, otherUserId);
+        return true;
+    }
+
+    // Whether the graph has the friendship; false may be stale, see areFriends
+    public boolean linked(String userId, String otherUserId) {
+        Graph current = graph;
+        if (current == null) {
+            return false;
+        }
+        int user = current.indexOf(userId);
+        int other = current.indexOf(otherUserId);
+        return user >= 0 && other >= 0 && current.friendsOf(user).contains(other);
+    }
+
+    // Matches userId's document if otherUserId is among its friendIds
+    public static Query friendshipQuery(String userId, String otherUserId) {
+        return Query.query(Criteria.where("_id").is(userId).and("friendIds").is(otherUserId));
+    }
+
+    // Empty for unknown users as well as users without friends
+    public List<String> friendIds(String userId) {
+        Graph current = graph;
+        if (current == null) {
+            return friendIdsFromProfile(userId);
+        }
+        int user = current.indexOf(userId);
+        return user < 0 ? List.of() : current.idsOf(current.friendsOf(user).values());
+    }
+
+    public List<String> mutualFriends(String userId, String otherUserId) {
+        Graph current = graph;
+        if (current == null) {
+            Set<String> others = new HashSet<>(friendIdsFromProfile(otherUserId));
+            return friendIdsFromProfile(userId).stream().filter(others::contains).collect(Collectors.toList());
+        }
+        int user = current.indexOf(userId);
+        int other = current.indexOf(otherUserId);
+        if (user < 0 || other < 0) {
+            return List.of();
+        }
+        // Walk the smaller set and probe the larger one
+        IntSet mine = current.friendsOf(user);
+        IntSet theirs = current.friendsOf(other);
+        IntSet smaller = mine.size() <= theirs.size() ? mine : theirs;
+        IntSet larger = smaller == mine ? theirs : mine;
+        return current.idsOf(Arrays.stream(smaller.values()).filter(larger::contains).toArray());
+    }
+
+    // Friends of friends who are not yet friends, most mutual friends first
+    public List<Suggestion> suggestions(String userId, int limit) {
+        Graph current = graph;
+        int user = current != null ? current.indexOf(userId) : -1;
+        if (user < 0) {
+            return List.of();
+        }
+        IntSet friends = current.friendsOf(user);
+        Map<Integer, Integer> mutualCounts = new HashMap<>();
+        for (int friend : friends.values()) {
+            for (int candidate : current.friendsOf(friend).values()) {
+                if (candidate != user && !friends.contains(candidate)) {
+                    mutualCounts.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        return mutualCounts.entrySet().stream()
+            .map(entry -> new Suggestion(current.idOf(entry.getKey()), entry.getValue()))
+            .sorted(Comparator.comparingInt(Suggestion::mutualCount).reversed().thenComparing(Suggestion::userId))
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    private List<String> friendIdsFromProfile(String userId) {
+        return userLookupService.findById(userId).map(User::getFriendIds).orElse(List.of());
+    }
+
+    // Writes happen under FriendGraph.writeLock, or before the graph is published. Readers
+    // take no lock: an index is only handed out after its slots are filled, and the
+    // adjacency sets are swapped in whole.
+    static final class Graph {
+        private final Map<String, Integer> index = new ConcurrentHashMap<>();
+        private volatile String[] ids = new String[1024];
+        private volatile AtomicReferenceArray<IntSet> friends = new AtomicReferenceArray<>(1024);
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int indexOf(String userId) {
+            Integer found = userId != null ? index.get(userId) : null;
+            return found != null ? found : -1;
+        }
+
+        String idOf(int user) {
+            return ids[user];
+        }
+
+        List<String> idsOf(int[] users) {
+            String[] current = ids;
+            List<String> result = new ArrayList<>(users.length);
+            for (int user : users) {
+                result.add(current[user]);
+            }
+            return result;
+        }
+
+        IntSet friendsOf(int user) {
+            IntSet set = friends.get(user);
+            return set != null ? set : IntSet.EMPTY;
+        }
+
+        void setFriends(String userId, List<String> friendIds) {
+            int user = intern(userId);
+            int[] members = new int[friendIds.size()];
+            for (int i = 0; i < members.length; i++) {
+                members[i] = intern(friendIds.get(i));
+            }
+            friends.set(user, IntSet.of(members));
+        }
+
+        void apply(Change change) {
+            int user = intern(change.userId());
+            int friend = intern(change.friendId());
+            if (change.linked()) {
+                friends.set(user, friendsOf(user).with(friend));
+                friends.set(friend, friendsOf(friend).with(user));
+            } else {
+                friends.set(user, friendsOf(user).without(friend));
+                friends.set(friend, friendsOf(friend).without(user));
+            }
+        }
+
+        private int intern(String userId) {
+            Integer existing = index.get(userId);
+            if (existing != null) {
+                return existing;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                AtomicReferenceArray<IntSet> grown = new AtomicReferenceArray<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    grown.set(i, friends.get(i));
+                }
+                friends = grown;
+            }
+            int user = size++;
+            ids[user] = userId;
+            index.put(userId, user);
+            return user;
+        }
+    }
+
+    // Immutable set of interned ids: open addressing with linear probing, kept at most half
+    // full. Slots hold id + 1 so that 0 marks an empty slot.
+    static final class IntSet {
+        static final IntSet EMPTY = new IntSet(new int[0], 0);
+
+        private final int[] slots;
+        private final int size;
+
+        private IntSet(int[] slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+
+        static IntSet of(int[] values) {
+            if (values.length == 0) {
+                return EMPTY;
+            }
+            int capacity = Integer.highestOneBit(Math.max(values.length, 2) * 2 - 1) << 1;
+            int[] slots = new int[capacity];
+            int size = 0;
+            for (int value : values) {
+                int slot = find(slots, value);
+                if (slots[slot] == 0) {
+                    slots[slot] = value + 1;
+                    size++;
+                }
+            }
+            return new IntSet(slots, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean contains(int value) {
+            return size > 0 && slots[find(slots, value)] != 0;
+        }
+
+        IntSet with(int value) {
+            if (contains(value)) {
+                return this;
+            }
+            int[] values = Arrays.copyOf(values(), size + 1);
+            values[size] = value;
+            return of(values);
+        }
+
+        IntSet without(int value) {
+            if (!contains(value)) {
+                return this;
+            }
+            return of(Arrays.stream(values()).filter(member -> member != value).toArray());
+        }
+
+        int[] values() {
+            int[] values = new int[size];
+            int next = 0;
+            for (int slot : slots) {
+                if (slot != 0) {
+                    values[next++] = slot - 1;
+                }
+            }
+            return values;
+        }
+
+        // The slot holding `value`, or the empty slot where it would go
+        private static int find(int[] slots, int value) {
+            int mask = slots.length - 1;
+            int hash = value * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (slots[slot] != 0 && slots[slot] != value + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
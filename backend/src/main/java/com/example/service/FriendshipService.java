@@ -0,0 +1,168 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.model.FriendRemoval;
+import com.example.model.FriendRequest;
+import com.example.model.User;
+
+// Friend-graph mutations as single-document partial updates. Accepting a request first
+// claims it (PENDING -> ACCEPTED in one findAndModify, so only one caller wins), then
+// $addToSet's each side and deletes the request. The claimed request acts as an outbox
+// entry: if the process dies between those steps, replayPendingAccepts re-applies the
+// idempotent $addToSet's. Removing a friend works the same way with a FriendRemoval written
+// up front and replayed with $pull's. Whichever of an accept and a removal for the same pair
+// starts later drops the other's leftover outbox entry, so a replay cannot undo it. No
+// multi-document transaction is needed, so this also works on a standalone mongod.
+@Service
+public class FriendshipService {
+
+    private static final Logger log = LoggerFactory.getLogger(FriendshipService.class);
+
+    public enum AcceptResult { ACCEPTED, NOT_FOUND, ALREADY_PROCESSED }
+
+    private final MongoTemplate mongoTemplate;
+    private final UserLookupService userLookupService;
+    private final ParallelLookups parallelLookups;
+    private final FriendGraph friendGraph;
+    private final long replayAfterSeconds;
+
+    public FriendshipService(MongoTemplate mongoTemplate, UserLookupService userLookupService,
+                             ParallelLookups parallelLookups, FriendGraph friendGraph,
+                             @Value("${friends.accept-replay-after-seconds:30}") long replayAfterSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.userLookupService = userLookupService;
+        this.parallelLookups = parallelLookups;
+        this.friendGraph = friendGraph;
+        this.replayAfterSeconds = replayAfterSeconds;
+    }
+
+    public AcceptResult accept(String requestToken, String receiverId) {
+        FriendRequest claimed = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("requestToken").is(requestToken)
+                .and("receiverId").is(receiverId)
+                .and("status").is("PENDING")),
+            new Update().set("status", "ACCEPTED").set("acceptedAt", LocalDateTime.now()),
+            FindAndModifyOptions.options().returnNew(true),
+            FriendRequest.class);
+
+        if (claimed == null) {
+            boolean exists = mongoTemplate.exists(
+                Query.query(Criteria.where("requestToken").is(requestToken).and("receiverId").is(receiverId)),
+                FriendRequest.class);
+            return exists ? AcceptResult.ALREADY_PROCESSED : AcceptResult.NOT_FOUND;
+        }
+
+        // An unfriend of this pair still waiting for replay must not undo the accept
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+            Criteria.where("userId").is(claimed.getSenderId()).and("friendId").is(claimed.getReceiverId()),
+            Criteria.where("userId").is(claimed.getReceiverId()).and("friendId").is(claimed.getSenderId()))),
+            FriendRemoval.class);
+
+        try {
+            complete(claimed);
+        } catch (RejectedExecutionException e) {
+            // The request stays claimed, so replayPendingAccepts finishes linking both sides
+            log.warn("friends.accept outcome=deferred requestId={}", claimed.getId());
+        }
+        return AcceptResult.ACCEPTED;
+    }
+
+    // Deletes the request only while it is still pending, so a reject cannot undo an accept
+    public boolean reject(String requestToken) {
+        return mongoTemplate.findAndRemove(
+            Query.query(Criteria.where("requestToken").is(requestToken).and("status").is("PENDING")),
+            FriendRequest.class) != null;
+    }
+
+    // Throws RejectedExecutionException if the friend lists could not both be updated in
+    // time; the removal is then finished by replayPendingRemovals
+    public void remove(String userId, String friendId) {
+        // Likewise an accept of this pair still waiting for replay must not undo the removal
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+            Criteria.where("senderId").is(userId).and("receiverId").is(friendId),
+            Criteria.where("senderId").is(friendId).and("receiverId").is(userId))
+            .and("status").is("ACCEPTED")), FriendRequest.class);
+
+        FriendRemoval removal = mongoTemplate.insert(new FriendRemoval(userId, friendId));
+        try {
+            complete(removal);
+        } catch (RejectedExecutionException e) {
+            log.warn("friends.remove outcome=deferred removalId={}", removal.getId());
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${friends.accept-replay-interval-ms:60000}")
+    public void replayPendingAccepts() {
+        List<FriendRequest> stranded = mongoTemplate.find(
+            strandedAcceptsQuery(LocalDateTime.now().minusSeconds(replayAfterSeconds)), FriendRequest.class);
+        for (FriendRequest request : stranded) {
+            complete(request);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${friends.accept-replay-interval-ms:60000}")
+    public void replayPendingRemovals() {
+        List<FriendRemoval> stranded = mongoTemplate.find(
+            strandedRemovalsQuery(LocalDateTime.now().minusSeconds(replayAfterSeconds)), FriendRemoval.class);
+        for (FriendRemoval removal : stranded) {
+            complete(removal);
+        }
+    }
+
+    static Query strandedAcceptsQuery(LocalDateTime acceptedBefore) {
+        return Query.query(Criteria.where("status").is("ACCEPTED").and("acceptedAt").lt(acceptedBefore));
+    }
+
+    static Query strandedRemovalsQuery(LocalDateTime requestedBefore) {
+        return Query.query(Criteria.where("requestedAt").lt(requestedBefore));
+    }
+
+    private void complete(FriendRequest request) {
+        link(request.getSenderId(), request.getReceiverId());
+        userLookupService.invalidate(request.getSenderId(), request.getReceiverId());
+        friendGraph.link(request.getSenderId(), request.getReceiverId());
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(request.getId())), FriendRequest.class);
+    }
+
+    private void complete(FriendRemoval removal) {
+        unlink(removal.getUserId(), removal.getFriendId());
+        userLookupService.invalidate(removal.getUserId(), removal.getFriendId());
+        friendGraph.unlink(removal.getUserId(), removal.getFriendId());
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(removal.getId())), FriendRemoval.class);
+    }
+
+    private void link(String userId, String friendId) {
+        updateBoth(userId, new Update().addToSet("friendIds", friendId),
+            friendId, new Update().addToSet("friendIds", userId));
+    }
+
+    private void unlink(String userId, String friendId) {
+        updateBoth(userId, new Update().pull("friendIds", friendId),
+            friendId, new Update().pull("friendIds", userId));
+    }
+
+    // The two sides are separate documents, so their writes go out together
+    private void updateBoth(String userId, Update userUpdate, String friendId, Update friendUpdate) {
+        try (ParallelLookups.Scope scope = parallelLookups.open()) {
+            scope.fork(() -> mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), userUpdate, User.class));
+            scope.fork(() -> mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(friendId)), friendUpdate, User.class));
+            scope.join();
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Delivers group messages off the request thread. A send only enqueues one task; a single
+// worker drains tasks in batches, pushes each message to the members that are online and
+// then records all resulting delivered watermarks in one bulk write per batch. When the
+// queue is full the caller delivers inline, which slows senders down instead of dropping.
+@Service
+public class GroupFanoutService {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupFanoutService.class);
+
+    private record FanoutTask(String groupId, List<String> memberIds, String senderId, long seq,
+                              Map<String, Object> event) {
+    }
+
+    private final RealtimeGateway realtimeGateway;
+    private final GroupReceiptService groupReceiptService;
+    private final BlockingQueue<FanoutTask> queue;
+    private final int batchSize;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder tasksProcessed = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder inlineDeliveries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public GroupFanoutService(RealtimeGateway realtimeGateway, GroupReceiptService groupReceiptService,
+                              @Value("${groups.fanout.queue-capacity:10000}") int queueCapacity,
+                              @Value("${groups.fanout.batch-size:100}") int batchSize) {
+        this.realtimeGateway = realtimeGateway;
+        this.groupReceiptService = groupReceiptService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.worker = new Thread(this::run, "group-fanout");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void enqueue(String groupId, List<String> memberIds, String senderId, long seq,
+                        Map<String, Object> event) {
+        FanoutTask task = new FanoutTask(groupId, memberIds, senderId, seq, event);
+        if (!queue.offer(task)) {
+            inlineDeliveries.increment();
+            process(List.of(task));
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("tasksProcessed", tasksProcessed.sum());
+        metrics.put("batchesWritten", batchesWritten.sum());
+        metrics.put("inlineDeliveries", inlineDeliveries.sum());
+        metrics.put("failures", failures.sum());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        // Deliver what is already queued so no delivered watermark is lost on a clean stop
+        List<FanoutTask> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            process(remaining);
+        }
+    }
+
+    private void run() {
+        List<FanoutTask> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                FanoutTask first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<FanoutTask> batch) {
+        // One watermark per (group, member) for the whole batch
+        Map<String, GroupReceiptService.Watermark> watermarks = new HashMap<>();
+        for (FanoutTask task : batch) {
+            try {
+                Set<String> reached = realtimeGateway.publish(task.memberIds(), task.event());
+                for (String userId : reached) {
+                    record(watermarks, new GroupReceiptService.Watermark(task.groupId(), userId, task.seq(), 0));
+                }
+                // The sender has seen their own message
+                record(watermarks, new GroupReceiptService.Watermark(task.groupId(), task.senderId(), task.seq(), task.seq()));
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("group fan-out failed groupId={}", task.groupId(), e);
+            }
+        }
+        tasksProcessed.add(batch.size());
+
+        try {
+            groupReceiptService.advanceAll(watermarks.values());
+            batchesWritten.increment();
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("recording group deliveries failed", e);
+        }
+    }
+
+    private static void record(Map<String, GroupReceiptService.Watermark> watermarks,
+                               GroupReceiptService.Watermark watermark) {
+        watermarks.merge(watermark.groupId() + ":" + watermark.userId(), watermark,
+            GroupReceiptService.Watermark::merge);
+    }
+}
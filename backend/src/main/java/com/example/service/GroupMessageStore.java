@@ -0,0 +1,107 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Conversation;
+import com.example.model.Group;
+
+// Group history lives in the same append-only bucket store as direct messages, keyed by
+// the group id. The group document itself only holds members, the inbox summary and the
+// messageSeq counter, so a send never reads or rewrites history.
+@Service
+public class GroupMessageStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageStore messageStore;
+
+    public GroupMessageStore(MongoTemplate mongoTemplate, MessageStore messageStore) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageStore = messageStore;
+    }
+
+    // Claims the next seq and applies `summary` in one write that only matches while the
+    // sender is a member, then appends the message. Returns the group with just its
+    // memberIds and messageSeq, or null if the group is missing or the sender not a member.
+    public Group append(String groupId, Group.GroupMessage message, Update summary) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+
+        Group group = mongoTemplate.findAndModify(appendQuery(groupId, message.getSenderId()), summary.inc("messageSeq", 1),
+            FindAndModifyOptions.options().returnNew(true), Group.class);
+        if (group == null) {
+            return null;
+        }
+
+        message.setSeq(group.getMessageSeq());
+        messageStore.append(groupId, toStored(message));
+        return group;
+    }
+
+    static Query appendQuery(String groupId, String senderId) {
+        Query query = Query.query(Criteria.where("_id").is(groupId).and("memberIds").is(senderId));
+        query.fields().include("memberIds", "messageSeq");
+        return query;
+    }
+
+    // Returns the group's messageSeq as of the same write, i.e. the seq of the last message
+    // sent before the members joined, or -1 if the group is missing
+    public long addMembers(String groupId, List<String> memberIds) {
+        Query query = Query.query(Criteria.where("_id").is(groupId));
+        query.fields().include("messageSeq");
+        Update update = new Update().addToSet("memberIds").each(memberIds.toArray());
+        Group group = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Group.class);
+        return group != null ? group.getMessageSeq() : -1;
+    }
+
+    // Same page semantics as MessageStore.findPage, including groups whose embedded
+    // messages have not been migrated to buckets yet
+    public List<Group.GroupMessage> findPage(Group group, MessageCursor before, MessageCursor after, int limit) {
+        List<Conversation.Message> page;
+        if (group.getMessages() == null || group.getMessages().isEmpty()) {
+            page = messageStore.findPage(group.getGroupId(), before, after, limit);
+        } else {
+            page = MessageCursor.slice(withEmbedded(group, messageStore.findAll(group.getGroupId())),
+                BucketedMessageStore::position, before, after, limit);
+        }
+        return page.stream()
+            .map(GroupMessageStore::fromStored)
+            .collect(Collectors.toList());
+    }
+
+    // The group's embedded messages followed by `bucketed`
+    static List<Conversation.Message> withEmbedded(Group group, List<Conversation.Message> bucketed) {
+        List<Conversation.Message> messages = new ArrayList<>(group.getMessages().size() + bucketed.size());
+        for (Group.GroupMessage message : group.getMessages()) {
+            messages.add(toStored(message));
+        }
+        messages.addAll(bucketed);
+        return messages;
+    }
+
+    static Conversation.Message toStored(Group.GroupMessage message) {
+        Conversation.Message stored = new Conversation.Message(
+            message.getSenderId(), message.getText(), message.getTimestamp(), message.getStatus());
+        stored.setId(message.getId());
+        stored.setSeq(message.getSeq());
+        return stored;
+    }
+
+    static Group.GroupMessage fromStored(Conversation.Message stored) {
+        Group.GroupMessage message = new Group.GroupMessage(
+            stored.getSenderId(), stored.getText(), stored.getTimestamp(), stored.getStatus());
+        message.setId(stored.getId());
+        message.setSeq(stored.getSeq());
+        return message;
+    }
+}
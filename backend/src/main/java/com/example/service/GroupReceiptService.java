@@ -0,0 +1,127 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Group;
+import com.example.model.GroupReceipt;
+
+// Per-member delivered/read watermarks for groups, stored in group_receipts.
+@Service
+public class GroupReceiptService {
+
+    public record Watermark(String groupId, String userId, long deliveredSeq, long readSeq) {
+        public Watermark merge(Watermark other) {
+            return new Watermark(groupId, userId,
+                Math.max(deliveredSeq, other.deliveredSeq), Math.max(readSeq, other.readSeq));
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    public GroupReceiptService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Marks everything up to the group's current messageSeq as read (and so delivered).
+    // Returns false if the group does not exist or the user is not a member.
+    public boolean markRead(String groupId, String userId) {
+        Query query = Query.query(Criteria.where("_id").is(groupId).and("memberIds").is(userId));
+        query.fields().include("messageSeq");
+        Group group = mongoTemplate.findOne(query, Group.class);
+        if (group == null) {
+            return false;
+        }
+        advance(groupId, userId, group.getMessageSeq(), group.getMessageSeq());
+        return true;
+    }
+
+    public void advance(String groupId, String userId, long deliveredSeq, long readSeq) {
+        mongoTemplate.upsert(receiptQuery(groupId, userId),
+            watermarkUpdate(groupId, userId, deliveredSeq, readSeq), GroupReceipt.class);
+    }
+
+    // Applies many watermark moves in one unordered bulk write
+    public void advanceAll(Collection<Watermark> watermarks) {
+        if (watermarks.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, GroupReceipt.class);
+        for (Watermark watermark : watermarks) {
+            bulk.upsert(receiptQuery(watermark.groupId(), watermark.userId()),
+                watermarkUpdate(watermark.groupId(), watermark.userId(), watermark.deliveredSeq(), watermark.readSeq()));
+        }
+        bulk.execute();
+    }
+
+    // groupId -> unread count for the user, from each group's messageSeq and the user's readSeq
+    public Map<String, Integer> unreadCounts(String userId, List<Group> groups) {
+        Map<String, Integer> unread = new HashMap<>();
+        if (groups.isEmpty()) {
+            return unread;
+        }
+
+        List<String> receiptIds = groups.stream()
+            .map(group -> GroupReceipt.idFor(group.getGroupId(), userId))
+            .collect(Collectors.toList());
+        Map<String, Long> readSeqs = mongoTemplate.find(Query.query(Criteria.where("_id").in(receiptIds)), GroupReceipt.class)
+            .stream()
+            .collect(Collectors.toMap(GroupReceipt::getGroupId, GroupReceipt::getReadSeq));
+
+        for (Group group : groups) {
+            long readSeq = readSeqs.getOrDefault(group.getGroupId(), 0L);
+            unread.put(group.getGroupId(), (int) Math.max(0, group.getMessageSeq() - readSeq));
+        }
+        return unread;
+    }
+
+    // How far every member has got: the lowest delivered/read watermark across memberIds,
+    // with members that never acknowledged anything counting as 0
+    public Watermark lowWatermark(Group group) {
+        List<String> memberIds = group.getMemberIds();
+        if (memberIds.isEmpty()) {
+            return new Watermark(group.getGroupId(), null, 0, 0);
+        }
+        return lowWatermark(group, mongoTemplate.find(receiptsQuery(group), GroupReceipt.class));
+    }
+
+    static Query receiptsQuery(Group group) {
+        List<String> receiptIds = group.getMemberIds().stream()
+            .map(memberId -> GroupReceipt.idFor(group.getGroupId(), memberId))
+            .collect(Collectors.toList());
+        return Query.query(Criteria.where("_id").in(receiptIds));
+    }
+
+    static Watermark lowWatermark(Group group, List<GroupReceipt> receipts) {
+        if (receipts.size() < group.getMemberIds().size()) {
+            return new Watermark(group.getGroupId(), null, 0, 0);
+        }
+        long delivered = receipts.stream().mapToLong(GroupReceipt::getDeliveredSeq).min().orElse(0);
+        long read = receipts.stream().mapToLong(GroupReceipt::getReadSeq).min().orElse(0);
+        return new Watermark(group.getGroupId(), null, delivered, read);
+    }
+
+    private static Query receiptQuery(String groupId, String userId) {
+        return Query.query(Criteria.where("_id").is(GroupReceipt.idFor(groupId, userId)));
+    }
+
+    private static Update watermarkUpdate(String groupId, String userId, long deliveredSeq, long readSeq) {
+        return new Update()
+            .setOnInsert("groupId", groupId)
+            .setOnInsert("userId", userId)
+            .max("deliveredSeq", Math.max(deliveredSeq, readSeq))
+            .max("readSeq", readSeq)
+            .set("updatedAt", LocalDateTime.now());
+    }
+}
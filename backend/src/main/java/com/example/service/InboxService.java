@@ -0,0 +1,157 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Conversation;
+import com.example.model.Group;
+import com.example.security.EncryptionUtil;
+
+// Keeps the per-conversation/per-group inbox summary (last message preview, timestamp,
+// unread counters) up to date on every send, so the inbox never has to look at history.
+@Service
+public class InboxService {
+
+    private static final int PREVIEW_LENGTH = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final UserLookupService userLookupService;
+    private final EncryptionUtil encryptionUtil;
+    private final GroupReceiptService groupReceiptService;
+
+    public InboxService(MongoTemplate mongoTemplate, UserLookupService userLookupService, EncryptionUtil encryptionUtil,
+                        GroupReceiptService groupReceiptService) {
+        this.mongoTemplate = mongoTemplate;
+        this.userLookupService = userLookupService;
+        this.encryptionUtil = encryptionUtil;
+        this.groupReceiptService = groupReceiptService;
+    }
+
+    // Returns the update that records a direct message in the summary; the caller applies it
+    // in the same write that resolves the conversation and claims the message's seq
+    public Update conversationMessageUpdate(String plainText, Conversation.Message message,
+                                            Collection<String> recipientIds) {
+        Update update = summaryUpdate(plainText, message.getSenderId(), message.getTimestamp());
+        recipientIds.forEach(recipientId -> update.inc("unreadCounts." + recipientId, 1));
+        return update;
+    }
+
+    // Returns the update that records a group message in the summary; the caller applies it
+    // together with the seq increment. Group unread counts come from GroupReceiptService
+    // watermarks rather than per-member counters, so this does not grow with the group.
+    public Update groupMessageUpdate(String plainText, Group.GroupMessage message) {
+        return summaryUpdate(plainText, message.getSenderId(), message.getTimestamp());
+    }
+
+    public boolean markConversationRead(String conversationId, String userId) {
+        Query query = Query.query(Criteria.where("_id").is(conversationId).and("participants").is(userId));
+        query.fields().include("messageSeq");
+        Conversation conversation = mongoTemplate.findOne(query, Conversation.class);
+        if (conversation == null) {
+            return false;
+        }
+        Update update = new Update()
+            .set("unreadCounts." + userId, 0)
+            .max("readSeq." + userId, conversation.getMessageSeq())
+            .max("deliveredSeq." + userId, conversation.getMessageSeq());
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(conversationId)), update, Conversation.class);
+        return true;
+    }
+
+    public boolean markGroupRead(String groupId, String userId) {
+        return groupReceiptService.markRead(groupId, userId);
+    }
+
+    // The user's conversations and groups, most recent activity first, without legacy history
+    static Query conversationsQuery(String userId) {
+        Query query = Query.query(Criteria.where("participants").is(userId))
+            .with(Sort.by(Sort.Direction.DESC, "lastMessageAt"));
+        query.fields().exclude("messages");
+        return query;
+    }
+
+    static Query groupsQuery(String userId) {
+        Query query = Query.query(Criteria.where("memberIds").is(userId))
+            .with(Sort.by(Sort.Direction.DESC, "lastMessageAt"));
+        query.fields().exclude("messages");
+        return query;
+    }
+
+    public List<Map<String, Object>> getInbox(String userId) {
+        List<Conversation> conversations = mongoTemplate.find(conversationsQuery(userId), Conversation.class);
+        List<Group> groups = mongoTemplate.find(groupsQuery(userId), Group.class);
+        Map<String, Integer> groupUnread = groupReceiptService.unreadCounts(userId, groups);
+
+        // Resolve the other side of every DM in one round trip
+        Set<String> otherIds = new HashSet<>();
+        conversations.forEach(conv -> conv.getParticipants().stream()
+            .filter(id -> !id.equals(userId))
+            .forEach(otherIds::add));
+        Map<String, String> usernames = new HashMap<>();
+        userLookupService.findByIds(otherIds).forEach((id, user) -> usernames.put(id, user.getUsername()));
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (Conversation conv : conversations) {
+            String otherId = conv.getParticipants().stream()
+                .filter(id -> !id.equals(userId))
+                .findFirst()
+                .orElse(userId);
+
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("type", "direct");
+            entry.put("conversationId", conv.getConversationId());
+            entry.put("participants", conv.getParticipants());
+            entry.put("name", usernames.getOrDefault(otherId, "Unknown User"));
+            putSummary(entry, conv.getLastMessagePreview(), conv.getLastMessageAt(),
+                conv.getLastSenderId(), conv.getUnreadCounts().getOrDefault(userId, 0));
+            entries.add(entry);
+        }
+        for (Group group : groups) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("type", "group");
+            entry.put("groupId", group.getGroupId());
+            entry.put("name", group.getName());
+            putSummary(entry, group.getLastMessagePreview(), group.getLastMessageAt(),
+                group.getLastSenderId(), groupUnread.getOrDefault(group.getGroupId(), 0));
+            entries.add(entry);
+        }
+
+        entries.sort(Comparator.comparing(
+            (Map<String, Object> entry) -> (LocalDateTime) entry.get("lastMessageAt"),
+            Comparator.nullsLast(Comparator.reverseOrder())));
+        return entries;
+    }
+
+    private Update summaryUpdate(String plainText, String senderId, LocalDateTime timestamp) {
+        return new Update()
+            .set("lastMessagePreview", encryptionUtil.encrypt(preview(plainText)))
+            .set("lastMessageAt", timestamp)
+            .set("lastSenderId", senderId);
+    }
+
+    private void putSummary(Map<String, Object> entry, String encryptedPreview, LocalDateTime lastMessageAt,
+                            String lastSenderId, int unreadCount) {
+        entry.put("lastMessage", encryptedPreview != null ? encryptionUtil.decrypt(encryptedPreview) : null);
+        entry.put("lastMessageAt", lastMessageAt);
+        entry.put("lastSenderId", lastSenderId);
+        entry.put("unreadCount", unreadCount);
+    }
+
+    private static String preview(String text) {
+        return text.length() <= PREVIEW_LENGTH ? text : text.substring(0, PREVIEW_LENGTH);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Opaque keyset position in a message history: the (timestamp, id) of a message.
+// Clients get it back as `nextBefore`/`nextAfter` and pass it as `before`/`after`.
+public final class MessageCursor implements Comparable<MessageCursor> {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final Comparator<MessageCursor> ORDER = Comparator
+        .comparing(MessageCursor::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(MessageCursor::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final LocalDateTime timestamp;
+    private final String id;
+
+    private MessageCursor(LocalDateTime timestamp, String id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public static MessageCursor of(LocalDateTime timestamp, String id) {
+        return new MessageCursor(timestamp, id);
+    }
+
+    // Returns null for a missing cursor; throws IllegalArgumentException for a malformed one
+    public static MessageCursor parse(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            LocalDateTime timestamp = LocalDateTime.parse(decoded.substring(0, separator));
+            String id = decoded.substring(separator + 1);
+            return new MessageCursor(timestamp, id.isEmpty() ? null : id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+
+    public static int pageSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    // Applies the page semantics of MessageStore.findPage to an in-memory list
+    public static <T> List<T> slice(List<T> messages, Function<T, MessageCursor> position,
+                                    MessageCursor before, MessageCursor after, int limit) {
+        List<T> page = messages.stream()
+            .filter(message -> {
+                MessageCursor current = position.apply(message);
+                return (before == null || current.compareTo(before) < 0)
+                    && (after == null || current.compareTo(after) > 0);
+            })
+            .sorted(Comparator.comparing(position))
+            .collect(Collectors.toList());
+
+        if (page.size() <= limit) {
+            return page;
+        }
+        return after != null
+            ? page.subList(0, limit)
+            : page.subList(page.size() - limit, page.size());
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + (id != null ? id : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int compareTo(MessageCursor other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.service;
+
+// Message status derived from receipt watermarks instead of being stored per message:
+// a message is "read" once the recipients' read watermark reaches its seq, "delivered"
+// once their delivered watermark does, and "sent" before that.
+public final class MessageStatus {
+
+    public static final String SENT = "sent";
+    public static final String DELIVERED = "delivered";
+    public static final String READ = "read";
+
+    private MessageStatus() {
+    }
+
+    // Messages stored before sequencing keep whatever status they were saved with
+    public static String of(Long seq, String storedStatus, long deliveredSeq, long readSeq) {
+        if (seq == null) {
+            return storedStatus;
+        }
+        if (seq <= readSeq) {
+            return READ;
+        }
+        return seq <= deliveredSeq ? DELIVERED : SENT;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.service;
+
+import com.example.model.Conversation;
+import java.util.List;
+
+public interface MessageStore {
+
+    // Appends a single message; cost must not depend on the size of the existing history.
+    void append(String conversationId, Conversation.Message message);
+
+    // Returns the stored messages of a conversation, oldest first.
+    List<Conversation.Message> findAll(String conversationId);
+
+    // Returns at most `limit` messages strictly between the cursors, oldest first.
+    // With no `after` cursor the page is the newest messages older than `before`
+    // (or the newest messages overall); with an `after` cursor it is the oldest
+    // messages newer than it.
+    List<Conversation.Message> findPage(String conversationId, MessageCursor before, MessageCursor after, int limit);
+
+    // Same page as findPage, but read from the primary so that it reflects every
+    // acknowledged append. findPage may lag behind on a secondary.
+    List<Conversation.Message> findPageFromPrimary(String conversationId, MessageCursor before, MessageCursor after, int limit);
+}
@@ -0,0 +1,140 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Runs the independent lookups of one request at the same time, so the request waits for
+// the slowest of them rather than their sum. Usage:
+//
+//   try (ParallelLookups.Scope scope = parallelLookups.open()) {
+//       Supplier<Map<String, User>> users = scope.fork(() -> userLookupService.findByIds(ids));
+//       Supplier<List<FriendRequest>> requests = scope.fork(() -> repository.find...(...));
+//       scope.join();
+//       ... users.get(), requests.get()
+//   }
+//
+// All forks of a scope share one deadline (lookups.deadline-ms from open()). join() returns
+// once every fork has completed, rethrows the first failure as soon as it happens, and
+// throws RejectedExecutionException when the deadline passes first. Closing the scope
+// interrupts whatever is still running, which aborts a fork blocked in a Mongo call; its
+// result is discarded. Forks run on virtual threads, so blocking Mongo calls in them cost
+// no platform thread.
+@Component
+public class ParallelLookups {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long deadlineMs;
+
+    public ParallelLookups(@Value("${lookups.deadline-ms:2000}") long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+
+    public Scope open() {
+        return new Scope(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final long deadlineNanos;
+        // Completion of each fork, for join(), and the task running it, for close()
+        private final List<CompletableFuture<?>> forks = new ArrayList<>();
+        private final List<Future<?>> tasks = new ArrayList<>();
+        // Completed exceptionally by the first fork to fail, so join() need not wait for the rest
+        private final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+
+        private Scope(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        // The returned supplier may only be called after join()
+        public <T> Supplier<T> fork(Supplier<T> lookup) {
+            // CompletableFuture.cancel does not interrupt, so the task is submitted as a plain
+            // Future that close() can interrupt and completes the CompletableFuture itself
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.whenComplete((result, error) -> {
+                if (error != null) {
+                    firstFailure.completeExceptionally(error);
+                }
+            });
+            forks.add(future);
+            tasks.add(executor.submit(() -> {
+                try {
+                    future.complete(lookup.get());
+                } catch (Throwable error) {
+                    future.completeExceptionally(error);
+                }
+            }));
+            return () -> {
+                if (!future.isDone()) {
+                    throw new IllegalStateException("fork result read before join()");
+                }
+                try {
+                    return future.join();
+                } catch (CompletionException e) {
+                    throw unwrap(e.getCause());
+                }
+            };
+        }
+
+        public void join() {
+            CompletableFuture<Void> all = CompletableFuture.allOf(forks.toArray(new CompletableFuture<?>[0]));
+            long remaining = deadlineNanos - System.nanoTime();
+            try {
+                CompletableFuture.anyOf(all, firstFailure).get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                close();
+                throw new RejectedExecutionException("Lookups did not complete within " + deadlineMs + "ms", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RejectedExecutionException("Interrupted while waiting for lookups", e);
+            } catch (ExecutionException e) {
+                close();
+                throw unwrap(e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+            for (CompletableFuture<?> fork : forks) {
+                fork.cancel(false);
+            }
+        }
+
+        private RuntimeException unwrap(Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            if (error instanceof RuntimeException runtime) {
+                return runtime;
+            }
+            if (error instanceof Error fatal) {
+                throw fatal;
+            }
+            return new IllegalStateException(error);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.example.model.Conversation;
+import com.example.model.FriendRemoval;
+import com.example.model.FriendRequest;
+import com.example.model.Group;
+import com.example.model.GroupReceipt;
+import com.example.model.MessageBucket;
+import com.example.model.SyncCheckpoint;
+import com.example.model.User;
+
+// The queries the services issue, built by the same static builders the services call, with
+// placeholder arguments. IndexAuditRunner explains each one, so a builder that changes its
+// filter or sort is audited as it now stands.
+public final class QueryCatalog {
+
+    // fullScanReason is set for queries expected to scan their collection, e.g. startup
+    // backfills behind a property; those are reported rather than failed
+    public record Entry(String name, Class<?> entityClass, Query query, String fullScanReason) {
+        Entry(String name, Class<?> entityClass, Query query) {
+            this(name, entityClass, query, null);
+        }
+    }
+
+    private QueryCatalog() {
+    }
+
+    public static List<Entry> entries(String id, String otherId) {
+        LocalDateTime now = LocalDateTime.now();
+        MessageCursor cursor = MessageCursor.of(now, null);
+        Group group = new Group();
+        group.setGroupId(id);
+        group.setMemberIds(new ArrayList<>(List.of(id, otherId)));
+
+        return List.of(
+            // UserLookupService, UserSearchService, SyncService, FriendGraph
+            new Entry("findByIds", User.class, UserLookupService.profilesQuery(List.of(id, otherId))),
+            new Entry("search", User.class, UserSearchService.pageQuery("a", List.of(id), 0, 50)),
+            new Entry("changedProfiles", User.class, SyncService.changedProfilesQuery(List.of(id, otherId), now)),
+            new Entry("areFriends", User.class, FriendGraph.friendshipQuery(id, otherId)),
+            new Entry("friendGraphReload", User.class, FriendGraph.reloadQuery(),
+                "loads every user's friendIds each friends.graph.reload-interval-ms"),
+
+            // FriendshipService replays
+            new Entry("replayPendingAccepts", FriendRequest.class, FriendshipService.strandedAcceptsQuery(now)),
+            new Entry("replayPendingRemovals", FriendRemoval.class, FriendshipService.strandedRemovalsQuery(now)),
+
+            // DirectConversationService, InboxService, SyncService checkpoints
+            new Entry("getOrCreate", Conversation.class, DirectConversationService.upsertQuery(id, otherId)),
+            new Entry("inboxConversations", Conversation.class, InboxService.conversationsQuery(id)),
+            new Entry("inboxGroups", Group.class, InboxService.groupsQuery(id)),
+            new Entry("syncCheckpoint", SyncCheckpoint.class, Query.query(Criteria.where("_id").is(id))),
+
+            // GroupMessageStore, GroupReceiptService
+            new Entry("appendGroupMessage", Group.class, GroupMessageStore.appendQuery(id, otherId)),
+            new Entry("groupReceipts", GroupReceipt.class, GroupReceiptService.receiptsQuery(group)),
+
+            // BucketedMessageStore
+            new Entry("appendBucket", MessageBucket.class, BucketedMessageStore.appendQuery(id, 200)),
+            new Entry("allBuckets", MessageBucket.class, BucketedMessageStore.allQuery(id)),
+            new Entry("latestPage", MessageBucket.class, BucketedMessageStore.pageQuery(id, null, null)),
+            new Entry("pageBefore", MessageBucket.class, BucketedMessageStore.pageQuery(id, cursor, null)),
+            new Entry("pageAfter", MessageBucket.class, BucketedMessageStore.pageQuery(id, null, cursor)),
+
+            // Startup backfills and migrations
+            new Entry("userSearchBackfill", User.class, UserSearchBackfill.missingQuery()),
+            new Entry("pairKeyBackfill", Conversation.class, ConversationPairKeyBackfill.missingQuery(),
+                "startup backfill, conversations.pair-key-backfill.enabled"),
+            new Entry("migrateConversations", Conversation.class, ConversationMessageMigration.legacyQuery(),
+                "startup migration, messages.migration.enabled"),
+            new Entry("migrateGroups", Group.class, ConversationMessageMigration.legacyQuery(),
+                "startup migration, messages.migration.enabled")
+        );
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.config.ReactiveMongoConfig;
+import com.example.model.Conversation;
+import com.example.model.Group;
+import com.example.model.GroupReceipt;
+import com.example.model.MessageBucket;
+import com.example.model.User;
+import com.example.repository.reactive.ReactiveConversationRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking counterpart of DirectConversationService, GroupMessageStore and the bucket
+// store for the "reactive" profile. It issues the same queries and updates as those
+// (shared through their static builders), so documents written by either path are alike.
+@Service
+@Profile("reactive")
+public class ReactiveMessagingService {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    // History reads, which may be served by a secondary
+    private final ReactiveMongoTemplate readTemplate;
+    private final ReactiveConversationRepository conversationRepository;
+    private final int bucketSize;
+
+    public ReactiveMessagingService(ReactiveMongoTemplate mongoTemplate,
+                                    @Qualifier(ReactiveMongoConfig.SECONDARY_READS) ReactiveMongoTemplate readTemplate,
+                                    ReactiveConversationRepository conversationRepository,
+                                    @Value("${messages.bucket-size:200}") int bucketSize,
+                                    @Value("${messages.ingest.mode:sync}") String ingestMode) {
+        // Appends here go straight to the buckets, bypassing a write-behind queue and
+        // its log, and reads here would not see messages still waiting in one
+        if (!"sync".equals(ingestMode)) {
+            throw new IllegalStateException("The reactive profile requires messages.ingest.mode=sync");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.readTemplate = readTemplate;
+        this.conversationRepository = conversationRepository;
+        this.bucketSize = bucketSize;
+    }
+
+    public Mono<Conversation> getOrCreate(String userId, String otherUserId) {
+        return upsert(userId, otherUserId, new Update());
+    }
+
+    // Same as DirectConversationService.recordMessage
+    public Mono<Conversation> recordMessage(String senderId, String receiverId, Update summary) {
+        return upsert(senderId, receiverId, summary.inc("messageSeq", 1));
+    }
+
+    private Mono<Conversation> upsert(String userId, String otherUserId, Update update) {
+        Query query = DirectConversationService.upsertQuery(userId, otherUserId);
+        update.setOnInsert("participants", DirectConversationService.participants(userId, otherUserId));
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        // Two upserts racing to insert: the loser retries once and finds the winner's document
+        return mongoTemplate.findAndModify(query, update, options, Conversation.class)
+            .onErrorResume(DuplicateKeyException.class,
+                e -> mongoTemplate.findAndModify(query, update, options, Conversation.class));
+    }
+
+    public Mono<Void> append(String conversationId, Conversation.Message message) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+        return mongoTemplate.upsert(BucketedMessageStore.appendQuery(conversationId, bucketSize),
+            BucketedMessageStore.appendUpdate(message), MessageBucket.class).then();
+    }
+
+    // Same as GroupMessageStore.append; empty if the group is missing or the sender not a member
+    public Mono<Group> appendGroupMessage(String groupId, Group.GroupMessage message, Update summary) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+        return mongoTemplate.findAndModify(GroupMessageStore.appendQuery(groupId, message.getSenderId()),
+                summary.inc("messageSeq", 1), FindAndModifyOptions.options().returnNew(true), Group.class)
+            .flatMap(group -> {
+                message.setSeq(group.getMessageSeq());
+                return append(groupId, GroupMessageStore.toStored(message)).thenReturn(group);
+            });
+    }
+
+    // Same as FriendGraph.areFriends after the graph said no
+    public Mono<Boolean> areFriends(String userId, String otherUserId) {
+        return mongoTemplate.exists(FriendGraph.friendshipQuery(userId, otherUserId), User.class);
+    }
+
+    public Flux<Conversation> conversationsOf(String userId) {
+        return readTemplate.find(Query.query(Criteria.where("participants").is(userId)), Conversation.class);
+    }
+
+    // A conversation created moments ago may not have replicated yet
+    public Mono<Conversation> findConversation(String conversationId) {
+        return readTemplate.findById(conversationId, Conversation.class)
+            .switchIfEmpty(Mono.defer(() -> conversationRepository.findById(conversationId)));
+    }
+
+    // Same page semantics as MessageStore.findPage, including conversations whose
+    // embedded messages have not been migrated to buckets yet
+    public Mono<List<Conversation.Message>> loadPage(Conversation conversation, MessageCursor before,
+                                                     MessageCursor after, int limit) {
+        if (conversation.getMessages().isEmpty()) {
+            return findPage(conversation.getConversationId(), before, after, limit);
+        }
+        return readTemplate.find(Query.query(Criteria.where("conversationId").is(conversation.getConversationId())),
+                MessageBucket.class)
+            .flatMapIterable(MessageBucket::getMessages)
+            .collectList()
+            .map(bucketed -> {
+                List<Conversation.Message> messages = new ArrayList<>(conversation.getMessages());
+                messages.addAll(bucketed);
+                return MessageCursor.slice(messages, BucketedMessageStore::position, before, after, limit);
+            });
+    }
+
+    // Same as GroupMessageStore.findPage, including un-migrated embedded messages
+    public Mono<List<Group.GroupMessage>> findGroupPage(Group group, MessageCursor before,
+                                                        MessageCursor after, int limit) {
+        Mono<List<Conversation.Message>> page = group.getMessages() == null || group.getMessages().isEmpty()
+            ? findPage(group.getGroupId(), before, after, limit)
+            : readTemplate.find(Query.query(Criteria.where("conversationId").is(group.getGroupId())), MessageBucket.class)
+                .flatMapIterable(MessageBucket::getMessages)
+                .collectList()
+                .map(bucketed -> MessageCursor.slice(GroupMessageStore.withEmbedded(group, bucketed),
+                    BucketedMessageStore::position, before, after, limit));
+        return page.map(messages -> messages.stream().map(GroupMessageStore::fromStored).toList());
+    }
+
+    // Walks buckets from the cursor outwards like BucketedMessageStore.findPage and cancels
+    // the cursor at the first bucket that cannot contribute to the page
+    private Mono<List<Conversation.Message>> findPage(String conversationId, MessageCursor before,
+                                                      MessageCursor after, int limit) {
+        return Mono.defer(() -> {
+            BucketedMessageStore.PageWalk walk = new BucketedMessageStore.PageWalk(before, after, limit);
+            return readTemplate.find(BucketedMessageStore.pageQuery(conversationId, before, after), MessageBucket.class)
+                .takeWhile(walk::wants)
+                .doOnNext(walk::add)
+                .then(Mono.fromSupplier(walk::page));
+        });
+    }
+
+    // Same as GroupReceiptService.lowWatermark
+    public Mono<GroupReceiptService.Watermark> lowWatermark(Group group) {
+        if (group.getMemberIds().isEmpty()) {
+            return Mono.just(new GroupReceiptService.Watermark(group.getGroupId(), null, 0, 0));
+        }
+        return mongoTemplate.find(GroupReceiptService.receiptsQuery(group), GroupReceipt.class)
+            .collectList()
+            .map(receipts -> GroupReceiptService.lowWatermark(group, receipts));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+// One connected client. Outgoing frames go through a bounded queue that is drained by at
+// most one thread at a time, so a slow socket never blocks the request that produced the
+// message. When the queue is full the oldest frame is dropped; a client that keeps falling
+// behind is disconnected and is expected to catch up through the history endpoints.
+// WebSocketSession is not safe for concurrent use, so closing goes through the same drain
+// flag: close() only records the request, and whoever holds the flag performs it.
+class RealtimeConnection {
+
+    private final WebSocketSession session;
+    private final String userId;
+    private final BlockingQueue<Outbound> queue;
+    private final int maxConsecutiveDrops;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicInteger consecutiveDrops = new AtomicInteger();
+    // First close requested wins; performed by the thread holding the drain flag
+    private final AtomicReference<CloseStatus> closeRequested = new AtomicReference<>();
+
+    RealtimeConnection(WebSocketSession session, String userId, int queueCapacity) {
+        this.session = session;
+        this.userId = userId;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxConsecutiveDrops = queueCapacity;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Returns the number of frames dropped to make room (0 or 1)
+    int enqueue(TextMessage message) {
+        Outbound outbound = new Outbound(message, System.nanoTime());
+        int dropped = 0;
+        while (!queue.offer(outbound)) {
+            if (queue.poll() != null) {
+                dropped++;
+            }
+        }
+        if (dropped > 0 && consecutiveDrops.addAndGet(dropped) > maxConsecutiveDrops) {
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        return dropped;
+    }
+
+    boolean hasPending() {
+        return !queue.isEmpty();
+    }
+
+    // Sends everything queued so far, or closes the session if that was requested;
+    // latencies (enqueue to write, in nanos) go to the recorder
+    void drain(LongConsumer latencyRecorder) {
+        do {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                while (true) {
+                    CloseStatus status = closeRequested.get();
+                    if (status != null || !session.isOpen()) {
+                        queue.clear();
+                        closeSession(status);
+                        return;
+                    }
+                    Outbound outbound = queue.poll();
+                    if (outbound == null) {
+                        break;
+                    }
+                    session.sendMessage(outbound.message);
+                    consecutiveDrops.set(0);
+                    latencyRecorder.accept(System.nanoTime() - outbound.enqueuedAt);
+                }
+            } catch (IOException e) {
+                queue.clear();
+                closeSession(CloseStatus.SERVER_ERROR);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // A producer may have enqueued, or close() asked for a close, between our last
+            // check and releasing the flag; it saw the flag taken and left that to us
+        } while ((hasPending() || closeRequested.get() != null) && session.isOpen());
+    }
+
+    // Closes now if no drain is running, otherwise the running drain closes before its next send
+    void close(CloseStatus status) {
+        closeRequested.compareAndSet(null, status);
+        drain(latency -> { });
+    }
+
+    // Only called while holding the drain flag
+    private void closeSession(CloseStatus status) {
+        try {
+            if (status != null && session.isOpen()) {
+                session.close(status);
+            }
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    private static class Outbound {
+        private final TextMessage message;
+        private final long enqueuedAt;
+
+        private Outbound(TextMessage message, long enqueuedAt) {
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Fans new messages out to the WebSocket connections of their recipients.
+@Service
+public class RealtimeGateway {
+
+    private final ObjectMapper objectMapper;
+    private final int queueCapacity;
+    private final ExecutorService senders;
+
+    private final Map<String, Set<RealtimeConnection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, RealtimeConnection> connectionsBySession = new ConcurrentHashMap<>();
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    public RealtimeGateway(ObjectMapper objectMapper,
+                           @Value("${realtime.queue-capacity:256}") int queueCapacity,
+                           @Value("${realtime.sender-threads:4}") int senderThreads) {
+        this.objectMapper = objectMapper;
+        this.queueCapacity = queueCapacity;
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "realtime-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void register(WebSocketSession session, String userId) {
+        RealtimeConnection connection = new RealtimeConnection(session, userId, queueCapacity);
+        connectionsBySession.put(session.getId(), connection);
+        connectionsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(connection);
+        connectionsOpened.increment();
+    }
+
+    public void unregister(WebSocketSession session) {
+        RealtimeConnection connection = connectionsBySession.remove(session.getId());
+        if (connection == null) {
+            return;
+        }
+        connectionsByUser.computeIfPresent(connection.getUserId(), (id, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    // Serializes the event once and queues it on every open connection of the given users.
+    // Returns the users that had at least one open connection.
+    public Set<String> publish(Collection<String> userIds, Map<String, Object> event) {
+        TextMessage frame;
+        try {
+            frame = new TextMessage(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable realtime event", e);
+        }
+
+        Set<String> reached = new HashSet<>();
+        for (String userId : userIds) {
+            Set<RealtimeConnection> connections = connectionsByUser.get(userId);
+            if (connections == null) {
+                continue;
+            }
+            for (RealtimeConnection connection : connections) {
+                framesDropped.add(connection.enqueue(frame));
+                scheduleDrain(connection);
+                reached.add(userId);
+            }
+        }
+        return reached;
+    }
+
+    public Map<String, Object> getMetrics() {
+        long sent = framesSent.sum();
+        int queued = connectionsBySession.values().stream().mapToInt(RealtimeConnection::getQueueDepth).sum();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connectionsBySession.size());
+        metrics.put("connectedUsers", connectionsByUser.size());
+        metrics.put("connectionsOpened", connectionsOpened.sum());
+        metrics.put("framesSent", sent);
+        metrics.put("framesDropped", framesDropped.sum());
+        metrics.put("framesQueued", queued);
+        metrics.put("avgSendLatencyMs", sent == 0 ? 0.0 : totalLatencyNanos.sum() / (double) sent / 1_000_000);
+        metrics.put("maxSendLatencyMs", maxLatencyNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        connectionsBySession.values().forEach(connection -> connection.close(CloseStatus.GOING_AWAY));
+    }
+
+    private void scheduleDrain(RealtimeConnection connection) {
+        try {
+            senders.execute(() -> connection.drain(this::recordLatency));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        framesSent.increment();
+        totalLatencyNanos.add(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Conversation;
+import com.example.model.Group;
+
+// Applies batches of delivered/read acknowledgements. An acknowledgement moves a
+// per-user watermark ("everything up to seq N"), never individual messages, so a batch
+// costs one read and one bulk write per kind of chat no matter how many messages it covers.
+@Service
+public class ReceiptService {
+
+    // One acknowledgement for a conversation or a group; either seq may be null
+    public record Receipt(String conversationId, String groupId, Long deliveredSeq, Long readSeq) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final GroupReceiptService groupReceiptService;
+    private final RealtimeGateway realtimeGateway;
+
+    public ReceiptService(MongoTemplate mongoTemplate, GroupReceiptService groupReceiptService,
+                          RealtimeGateway realtimeGateway) {
+        this.mongoTemplate = mongoTemplate;
+        this.groupReceiptService = groupReceiptService;
+        this.realtimeGateway = realtimeGateway;
+    }
+
+    // Returns the number of acknowledgements applied; receipts for chats the user is not
+    // part of are ignored, and seqs beyond the newest message are capped to it
+    public int acknowledge(String userId, List<Receipt> receipts) {
+        Map<String, Receipt> byConversation = new HashMap<>();
+        Map<String, Receipt> byGroup = new HashMap<>();
+        for (Receipt receipt : receipts) {
+            if (receipt.conversationId() != null) {
+                byConversation.merge(receipt.conversationId(), receipt, ReceiptService::merge);
+            } else if (receipt.groupId() != null) {
+                byGroup.merge(receipt.groupId(), receipt, ReceiptService::merge);
+            }
+        }
+        return acknowledgeConversations(userId, byConversation) + acknowledgeGroups(userId, byGroup);
+    }
+
+    private int acknowledgeConversations(String userId, Map<String, Receipt> receipts) {
+        if (receipts.isEmpty()) {
+            return 0;
+        }
+        Query query = Query.query(Criteria.where("_id").in(receipts.keySet()).and("participants").is(userId));
+        query.fields().include("participants", "messageSeq");
+        List<Conversation> conversations = mongoTemplate.find(query, Conversation.class);
+        if (conversations.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        List<Runnable> notifications = new ArrayList<>();
+        for (Conversation conversation : conversations) {
+            Receipt receipt = receipts.get(conversation.getConversationId());
+            long readSeq = cap(receipt.readSeq(), conversation.getMessageSeq());
+            long deliveredSeq = Math.max(cap(receipt.deliveredSeq(), conversation.getMessageSeq()), readSeq);
+
+            Update update = new Update()
+                .max("deliveredSeq." + userId, deliveredSeq)
+                .max("readSeq." + userId, readSeq);
+            if (readSeq > 0 && readSeq >= conversation.getMessageSeq()) {
+                update.set("unreadCounts." + userId, 0);
+            }
+            bulk.updateOne(Query.query(Criteria.where("_id").is(conversation.getConversationId())), update);
+
+            // Let the other side update its ticks without polling
+            List<String> others = conversation.getParticipants().stream()
+                .filter(id -> !id.equals(userId))
+                .collect(Collectors.toList());
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("type", "receipt");
+            event.put("conversationId", conversation.getConversationId());
+            event.put("userId", userId);
+            event.put("deliveredSeq", deliveredSeq);
+            event.put("readSeq", readSeq);
+            notifications.add(() -> realtimeGateway.publish(others, event));
+        }
+        bulk.execute();
+        notifications.forEach(Runnable::run);
+        return conversations.size();
+    }
+
+    private int acknowledgeGroups(String userId, Map<String, Receipt> receipts) {
+        if (receipts.isEmpty()) {
+            return 0;
+        }
+        Query query = Query.query(Criteria.where("_id").in(receipts.keySet()).and("memberIds").is(userId));
+        query.fields().include("messageSeq");
+        List<Group> groups = mongoTemplate.find(query, Group.class);
+
+        List<GroupReceiptService.Watermark> watermarks = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            Receipt receipt = receipts.get(group.getGroupId());
+            long readSeq = cap(receipt.readSeq(), group.getMessageSeq());
+            long deliveredSeq = cap(receipt.deliveredSeq(), group.getMessageSeq());
+            watermarks.add(new GroupReceiptService.Watermark(group.getGroupId(), userId, deliveredSeq, readSeq));
+        }
+        groupReceiptService.advanceAll(watermarks);
+        return watermarks.size();
+    }
+
+    private static Receipt merge(Receipt a, Receipt b) {
+        return new Receipt(a.conversationId(), a.groupId(), maxOf(a.deliveredSeq(), b.deliveredSeq()),
+            maxOf(a.readSeq(), b.readSeq()));
+    }
+
+    private static Long maxOf(Long a, Long b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : Math.max(a, b);
+    }
+
+    private static long cap(Long seq, long messageSeq) {
+        return seq == null ? 0 : Math.max(0, Math.min(seq, messageSeq));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.security.EncryptionUtil;
+
+// Walks every collection holding ciphertext in _id order and rewrites values that are not
+// under the active key. Each message is updated in place with a positional update that
+// only matches while it still holds the old ciphertext, so concurrent sends are never
+// blocked or overwritten. Throughput is capped by encryption.reencrypt.max-per-second.
+//
+// A pass can take hours and sleeps to hold that cap, so it runs on a thread of its own: the
+// scheduled tick only starts a pass when none is running and returns at once, leaving the
+// shared scheduler thread to the other @Scheduled jobs.
+@Component
+@ConditionalOnProperty(name = "encryption.reencrypt.enabled", havingValue = "true", matchIfMissing = true)
+public class ReencryptionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ReencryptionJob.class);
+
+    private static final List<String> COLLECTIONS = List.of("message_buckets", "groups", "conversations");
+
+    private final MongoTemplate mongoTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final int batchSize;
+    private final int maxPerSecond;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "reencryption");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Key id of the last pass that found nothing left to rewrite
+    private volatile String completedKeyId;
+
+    public ReencryptionJob(MongoTemplate mongoTemplate, EncryptionUtil encryptionUtil,
+                           @Value("${encryption.reencrypt.batch-size:100}") int batchSize,
+                           @Value("${encryption.reencrypt.max-per-second:500}") int maxPerSecond) {
+        this.mongoTemplate = mongoTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.batchSize = batchSize;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    @Scheduled(initialDelayString = "${encryption.reencrypt.initial-delay-ms:60000}",
+               fixedDelayString = "${encryption.reencrypt.interval-ms:300000}")
+    public void run() {
+        String target = encryptionUtil.getActiveKeyId();
+        if (target == null || target.equals(completedKeyId) || !running.compareAndSet(false, true)) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                pass(target);
+            } catch (RuntimeException e) {
+                log.warn("re-encryption pass failed keyId={}", target, e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private void pass(String target) {
+        long rewritten = 0;
+        for (String collection : COLLECTIONS) {
+            rewritten += reencryptCollection(collection);
+        }
+
+        if (rewritten == 0) {
+            completedKeyId = target;
+        } else {
+            log.info("re-encrypted values count={} keyId={}", rewritten, target);
+        }
+    }
+
+    private long reencryptCollection(String collectionName) {
+        Document projection = new Document("messages.id", 1)
+            .append("messages.text", 1)
+            .append("lastMessagePreview", 1);
+        Object lastId = null;
+        long rewritten = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            Document filter = lastId == null ? new Document() : new Document("_id", new Document("$gt", lastId));
+            List<Document> batch = mongoTemplate.getCollection(collectionName)
+                .find(filter)
+                .projection(projection)
+                .sort(new Document("_id", 1))
+                .limit(batchSize)
+                .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+            int updates = 0;
+            for (Document document : batch) {
+                lastId = document.get("_id");
+                updates += queueMessageUpdates(operations, document);
+                updates += queuePreviewUpdate(operations, document);
+            }
+            if (updates > 0) {
+                operations.execute();
+                rewritten += updates;
+                throttle(updates);
+            }
+        }
+        return rewritten;
+    }
+
+    private int queueMessageUpdates(BulkOperations operations, Document document) {
+        int updates = 0;
+        for (Document message : document.getList("messages", Document.class, List.of())) {
+            String text = message.getString("text");
+            if (text == null || encryptionUtil.isCurrent(text)) {
+                continue;
+            }
+            // Messages from before ids were introduced are matched on their ciphertext alone
+            Document match = new Document("text", text);
+            if (message.getString("id") != null) {
+                match.append("id", message.getString("id"));
+            }
+            operations.updateOne(
+                new BasicQuery(new Document("_id", document.get("_id"))
+                    .append("messages", new Document("$elemMatch", match))),
+                new Update().set("messages.$.text", encryptionUtil.reencrypt(text)));
+            updates++;
+        }
+        return updates;
+    }
+
+    private int queuePreviewUpdate(BulkOperations operations, Document document) {
+        String preview = document.getString("lastMessagePreview");
+        if (preview == null || encryptionUtil.isCurrent(preview)) {
+            return 0;
+        }
+        operations.updateOne(
+            new BasicQuery(new Document("_id", document.get("_id")).append("lastMessagePreview", preview)),
+            new Update().set("lastMessagePreview", encryptionUtil.reencrypt(preview)));
+        return 1;
+    }
+
+    private void throttle(int updates) {
+        try {
+            Thread.sleep(updates * 1000L / Math.max(maxPerSecond, 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.example.dto.MessageDto;
+import com.example.dto.UserSummaryDto;
+import com.example.model.Conversation;
+import com.example.model.FriendRequest;
+import com.example.model.Group;
+import com.example.model.SyncCheckpoint;
+import com.example.model.User;
+import com.example.repository.FriendRequestRepository;
+import com.example.security.EncryptionUtil;
+
+// Incremental sync for reconnecting clients. The token names the checkpoint stored by the
+// previous sync; a sync diffs the user's chats, friends and pending requests against it and
+// returns only what changed. Message deltas follow the per-chat messageSeq counters, so a
+// chat whose counter has not moved costs nothing beyond its summary row.
+@Service
+public class SyncService {
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageStore messageStore;
+    private final FriendRequestRepository friendRequestRepository;
+    private final UserLookupService userLookupService;
+    private final GroupReceiptService groupReceiptService;
+    private final EncryptionUtil encryptionUtil;
+    private final long gapGraceSeconds;
+
+    public SyncService(MongoTemplate mongoTemplate,
+                       MessageStore messageStore,
+                       FriendRequestRepository friendRequestRepository,
+                       UserLookupService userLookupService,
+                       GroupReceiptService groupReceiptService,
+                       EncryptionUtil encryptionUtil,
+                       @Value("${sync.gap-grace-seconds:10}") long gapGraceSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageStore = messageStore;
+        this.friendRequestRepository = friendRequestRepository;
+        this.userLookupService = userLookupService;
+        this.groupReceiptService = groupReceiptService;
+        this.encryptionUtil = encryptionUtil;
+        this.gapGraceSeconds = gapGraceSeconds;
+    }
+
+    // Messages sent for one chat and where the client stands afterwards
+    private record Delta(List<Conversation.Message> messages, SyncCheckpoint.Position position,
+                         boolean truncated, boolean hasMore) {
+    }
+
+    // Returns the changes since `token` plus the next token, or null if the user does not
+    // exist. A missing, expired or foreign token yields "reset": the client refetches through
+    // the regular endpoints, and should call sync first so nothing falls between the two.
+    public Map<String, Object> sync(String userId, String token, int limit) {
+        LocalDateTime startedAt = LocalDateTime.now();
+
+        Query userQuery = Query.query(Criteria.where("_id").is(userId));
+        userQuery.fields().include("friendIds");
+        User user = mongoTemplate.findOne(userQuery, User.class);
+        if (user == null) {
+            return null;
+        }
+
+        Query conversationQuery = Query.query(Criteria.where("participants").is(userId));
+        conversationQuery.fields().include("participants", "messageSeq", "deliveredSeq", "readSeq");
+        List<Conversation> conversations = mongoTemplate.find(conversationQuery, Conversation.class);
+
+        Query groupQuery = Query.query(Criteria.where("memberIds").is(userId));
+        groupQuery.fields().include("name", "creatorId", "memberIds", "messageSeq");
+        List<Group> groups = mongoTemplate.find(groupQuery, Group.class);
+
+        List<FriendRequest> pending = friendRequestRepository.findByStatusForUser("PENDING", userId);
+
+        SyncCheckpoint previous = load(userId, token);
+        SyncCheckpoint next = new SyncCheckpoint();
+        next.setUserId(userId);
+        next.setCreatedAt(startedAt);
+        next.setFriendIds(user.getFriendIds());
+        next.setPendingRequestTokens(pending.stream().map(FriendRequest::getRequestToken).collect(Collectors.toList()));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (previous == null) {
+            next.setConversations(conversations.stream()
+                .map(conv -> new SyncCheckpoint.Position(conv.getConversationId(), conv.getMessageSeq(), null, 0))
+                .collect(Collectors.toList()));
+            next.setGroups(groups.stream()
+                .map(group -> new SyncCheckpoint.Position(group.getGroupId(), group.getMessageSeq(), null,
+                    membersVersion(group)))
+                .collect(Collectors.toList()));
+            response.put("syncToken", mongoTemplate.insert(next).getId());
+            response.put("reset", true);
+            return response;
+        }
+
+        response.put("reset", false);
+        response.put("conversations", conversationChanges(conversations, previous, next, limit));
+        response.put("groups", groupChanges(groups, previous, next, limit));
+
+        Set<String> currentGroupIds = groups.stream().map(Group::getGroupId).collect(Collectors.toSet());
+        response.put("removedGroupIds", previous.getGroups().stream()
+            .map(SyncCheckpoint.Position::getId)
+            .filter(id -> !currentGroupIds.contains(id))
+            .collect(Collectors.toList()));
+
+        putFriendChanges(response, userId, user.getFriendIds(), previous);
+        putRequestChanges(response, userId, pending, previous);
+
+        response.put("syncToken", mongoTemplate.insert(next).getId());
+        return response;
+    }
+
+    private List<Map<String, Object>> conversationChanges(List<Conversation> conversations,
+                                                          SyncCheckpoint previous, SyncCheckpoint next, int limit) {
+        Map<String, SyncCheckpoint.Position> known = byId(previous.getConversations());
+        List<SyncCheckpoint.Position> positions = new ArrayList<>();
+        List<Map<String, Object>> changes = new ArrayList<>();
+
+        for (Conversation conv : conversations) {
+            SyncCheckpoint.Position before = known.getOrDefault(conv.getConversationId(),
+                new SyncCheckpoint.Position(conv.getConversationId(), 0, null, 0));
+            if (conv.getMessageSeq() <= before.getSeq()) {
+                positions.add(before);
+                continue;
+            }
+
+            Delta delta = messagesSince(conv.getConversationId(), before, limit);
+            positions.add(delta.position());
+            if (delta.messages().isEmpty()) {
+                continue;
+            }
+
+            Map<String, Object> change = new LinkedHashMap<>();
+            change.put("conversationId", conv.getConversationId());
+            change.put("participants", conv.getParticipants());
+            // Each message's status comes from its recipient's watermarks
+            change.put("messages", toDtos(delta.messages(), Map.of(), msg -> {
+                String recipientId = conv.getParticipants().stream()
+                    .filter(id -> !id.equals(msg.getSenderId()))
+                    .findFirst()
+                    .orElse(msg.getSenderId());
+                return MessageStatus.of(msg.getSeq(), msg.getStatus(),
+                    conv.getDeliveredSeq().getOrDefault(recipientId, 0L),
+                    conv.getReadSeq().getOrDefault(recipientId, 0L));
+            }));
+            putPaging(change, delta);
+            changes.add(change);
+        }
+
+        next.setConversations(positions);
+        return changes;
+    }
+
+    private List<Map<String, Object>> groupChanges(List<Group> groups, SyncCheckpoint previous,
+                                                   SyncCheckpoint next, int limit) {
+        Map<String, SyncCheckpoint.Position> known = byId(previous.getGroups());
+        List<SyncCheckpoint.Position> positions = new ArrayList<>();
+        Map<Group, Delta> deltas = new LinkedHashMap<>();
+
+        for (Group group : groups) {
+            SyncCheckpoint.Position before = known.get(group.getGroupId());
+            boolean joined = before == null;
+            if (joined) {
+                before = new SyncCheckpoint.Position(group.getGroupId(), 0, null, 0);
+            }
+
+            int version = membersVersion(group);
+            Delta delta = group.getMessageSeq() > before.getSeq()
+                ? messagesSince(group.getGroupId(), before, limit)
+                : new Delta(List.of(), before, false, false);
+            delta.position().setMembersVersion(version);
+            positions.add(delta.position());
+
+            if (joined || version != before.getMembersVersion() || !delta.messages().isEmpty()) {
+                deltas.put(group, delta);
+            }
+        }
+        next.setGroups(positions);
+
+        // Resolve every sender across all groups in one lookup
+        Map<String, User> senders = userLookupService.findByIds(deltas.values().stream()
+            .flatMap(delta -> delta.messages().stream())
+            .map(Conversation.Message::getSenderId)
+            .collect(Collectors.toSet()));
+
+        List<Map<String, Object>> changes = new ArrayList<>();
+        deltas.forEach((group, delta) -> {
+            Map<String, Object> change = new LinkedHashMap<>();
+            change.put("groupId", group.getGroupId());
+            change.put("name", group.getName());
+            change.put("creatorId", group.getCreatorId());
+            change.put("memberIds", group.getMemberIds());
+            if (delta.messages().isEmpty()) {
+                change.put("messages", List.of());
+            } else {
+                GroupReceiptService.Watermark everyone = groupReceiptService.lowWatermark(group);
+                change.put("messages", toDtos(delta.messages(), senders, msg -> MessageStatus.of(
+                    msg.getSeq(), msg.getStatus(), everyone.deliveredSeq(), everyone.readSeq())));
+            }
+            putPaging(change, delta);
+            changes.add(change);
+        });
+        return changes;
+    }
+
+    // Returns the messages of a chat after `before`, in order. Sync only advances through
+    // consecutive seqs: a missing seq is usually a send that has claimed it but not yet
+    // appended, so stopping there keeps it from being skipped. A gap older than the grace
+    // period is a send that failed after claiming its seq and is passed over. The page is read
+    // from the primary: on a lagging secondary a stored message would look like such a gap.
+    private Delta messagesSince(String chatId, SyncCheckpoint.Position before, int limit) {
+        boolean fromCursor = before.getCursor() != null;
+        List<Conversation.Message> page = messageStore.findPageFromPrimary(chatId, null,
+            fromCursor ? MessageCursor.parse(before.getCursor()) : null, limit);
+
+        // Messages stored before sequencing carry no seq and predate every token
+        List<Conversation.Message> fresh = page.stream()
+            .filter(msg -> msg.getSeq() != null && msg.getSeq() > before.getSeq())
+            .collect(Collectors.toList());
+
+        long expected = before.getSeq() + 1;
+        boolean truncated = false;
+        if (!fromCursor && page.size() == limit && !fresh.isEmpty() && fresh.get(0).getSeq() > expected) {
+            // More new messages than one page: send the newest and let the client page back
+            truncated = true;
+            expected = fresh.get(0).getSeq();
+        }
+
+        LocalDateTime graceCutoff = LocalDateTime.now().minusSeconds(gapGraceSeconds);
+        List<Conversation.Message> sent = new ArrayList<>();
+        long highest = before.getSeq();
+        for (Conversation.Message msg : fresh) {
+            if (msg.getSeq() > expected && msg.getTimestamp().isAfter(graceCutoff)) {
+                break;
+            }
+            sent.add(msg);
+            expected = Math.max(expected, msg.getSeq() + 1);
+            highest = Math.max(highest, msg.getSeq());
+        }
+
+        if (sent.isEmpty()) {
+            return new Delta(sent, before, false, false);
+        }
+        Conversation.Message last = sent.get(sent.size() - 1);
+        SyncCheckpoint.Position after = new SyncCheckpoint.Position(chatId, highest,
+            MessageCursor.of(last.getTimestamp(), last.getId()).encode(), before.getMembersVersion());
+        return new Delta(sent, after, truncated, fromCursor && page.size() == limit);
+    }
+
+    private List<MessageDto> toDtos(List<Conversation.Message> messages, Map<String, User> senders,
+                                    Function<Conversation.Message, String> status) {
+        List<String> texts = encryptionUtil.decryptAll(messages.stream()
+            .map(Conversation.Message::getText)
+            .collect(Collectors.toList()));
+
+        List<MessageDto> dtos = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Conversation.Message msg = messages.get(i);
+            User sender = senders.get(msg.getSenderId());
+            dtos.add(new MessageDto(msg.getId(), msg.getSeq(), msg.getSenderId(),
+                sender != null ? sender.getUsername() : null, texts.get(i), msg.getTimestamp(), status.apply(msg)));
+        }
+        return dtos;
+    }
+
+    // "truncated": older new messages were left out, fetch them from nextBefore.
+    // "hasMore": newer messages remain, sync again with the returned token.
+    private static void putPaging(Map<String, Object> change, Delta delta) {
+        change.put("truncated", delta.truncated());
+        change.put("hasMore", delta.hasMore());
+        if (delta.truncated()) {
+            Conversation.Message oldest = delta.messages().get(0);
+            change.put("nextBefore", MessageCursor.of(oldest.getTimestamp(), oldest.getId()).encode());
+        }
+    }
+
+    private void putFriendChanges(Map<String, Object> response, String userId, List<String> friendIds,
+                                  SyncCheckpoint previous) {
+        Set<String> before = new HashSet<>(previous.getFriendIds());
+        Set<String> now = new HashSet<>(friendIds);
+
+        List<String> added = friendIds.stream().filter(id -> !before.contains(id)).collect(Collectors.toList());
+        Map<String, User> addedUsers = userLookupService.findByIds(added);
+        response.put("addedFriends", added.stream()
+            .map(addedUsers::get)
+            .filter(Objects::nonNull)
+            .map(UserSummaryDto::of)
+            .collect(Collectors.toList()));
+        response.put("removedFriendIds", before.stream().filter(id -> !now.contains(id)).collect(Collectors.toList()));
+
+        // Profiles of the user and of existing friends edited since the last sync. Read from
+        // Mongo rather than the profile cache, which may not have seen the edit yet.
+        List<String> watched = friendIds.stream().filter(before::contains).collect(Collectors.toList());
+        watched.add(userId);
+        response.put("profiles", mongoTemplate.find(changedProfilesQuery(watched, previous.getCreatedAt()), User.class).stream()
+            .map(UserSummaryDto::of)
+            .collect(Collectors.toList()));
+    }
+
+    private void putRequestChanges(Map<String, Object> response, String userId, List<FriendRequest> pending,
+                                   SyncCheckpoint previous) {
+        Set<String> before = new HashSet<>(previous.getPendingRequestTokens());
+        List<FriendRequest> added = pending.stream()
+            .filter(request -> !before.contains(request.getRequestToken()))
+            .collect(Collectors.toList());
+        Map<String, User> otherUsers = userLookupService.findByIds(added.stream()
+            .map(request -> request.getSenderId().equals(userId) ? request.getReceiverId() : request.getSenderId())
+            .collect(Collectors.toList()));
+
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for (FriendRequest request : added) {
+            boolean isUserSender = request.getSenderId().equals(userId);
+            User otherUser = otherUsers.get(isUserSender ? request.getReceiverId() : request.getSenderId());
+            if (otherUser == null) {
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("requestToken", request.getRequestToken());
+            entry.put("type", isUserSender ? "sent" : "received");
+            entry.put("otherUser", UserSummaryDto.of(otherUser));
+            entry.put("requestDate", request.getRequestDate().toString());
+            requests.add(entry);
+        }
+        response.put("addedRequests", requests);
+
+        Set<String> now = pending.stream().map(FriendRequest::getRequestToken).collect(Collectors.toSet());
+        response.put("removedRequestTokens", before.stream().filter(t -> !now.contains(t)).collect(Collectors.toList()));
+    }
+
+    private SyncCheckpoint load(String userId, String token) {
+        if (token == null || !ObjectId.isValid(token)) {
+            return null;
+        }
+        SyncCheckpoint checkpoint = mongoTemplate.findById(token, SyncCheckpoint.class);
+        return checkpoint != null && userId.equals(checkpoint.getUserId()) ? checkpoint : null;
+    }
+
+    private static Map<String, SyncCheckpoint.Position> byId(List<SyncCheckpoint.Position> positions) {
+        return positions.stream().collect(Collectors.toMap(SyncCheckpoint.Position::getId, Function.identity(),
+            (first, second) -> first));
+    }
+
+    private static int membersVersion(Group group) {
+        return new ArrayList<>(new TreeSet<>(group.getMemberIds())).hashCode();
+    }
+
+    static Query changedProfilesQuery(List<String> userIds, LocalDateTime since) {
+        Query query = Query.query(Criteria.where("_id").in(userIds).and("updatedAt").gt(since));
+        query.fields().include("username", "email", "firstName", "lastName");
+        return query;
+    }
+}
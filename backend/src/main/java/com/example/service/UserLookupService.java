@@ -0,0 +1,137 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.example.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Resolves users through a bounded profile cache, loading all misses of a call in one
+// round trip. Returned users only carry the profile fields (id, username, email, first/last
+// name, friendIds), are shared between callers and must be treated as read-only; load the
+// full document from UserRepository to modify a user, then call invalidate.
+@Service
+public class UserLookupService {
+
+    // Power of two, so a stripe is a mask of the id's hash
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final Cache<String, User> profiles;
+    // Bumped by invalidate before the entry is dropped. A load only caches what it read if
+    // the id's stripe is unchanged since before the read; otherwise a write and invalidate
+    // that land between the read and the put would leave the old profile cached.
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    public UserLookupService(MongoTemplate mongoTemplate,
+                             @Value("${users.cache.max-size:10000}") long maxSize,
+                             @Value("${users.cache.ttl-seconds:300}") long ttlSeconds,
+                             MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.profiles = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "users.profiles");
+    }
+
+    public Optional<User> findById(String userId) {
+        return Optional.ofNullable(findByIds(List.of(userId)).get(userId));
+    }
+
+    public boolean exists(String userId) {
+        return findById(userId).isPresent();
+    }
+
+    // Unknown ids are simply absent from the result
+    public Map<String, User> findByIds(Collection<String> userIds) {
+        Set<String> ids = userIds.stream()
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, User> found = new HashMap<>(profiles.getAllPresent(ids));
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            if (!found.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<String, Long> generationById = new HashMap<>();
+        for (String id : missing) {
+            generationById.put(id, invalidations.get(stripe(id)));
+        }
+
+        for (User user : mongoTemplate.find(profilesQuery(missing), User.class)) {
+            cacheIfUnchanged(user, generationById.get(user.getId()));
+            found.put(user.getId(), user);
+        }
+        return found;
+    }
+
+    // The check runs inside compute, under the entry's lock, so it is ordered against the
+    // invalidate that follows the bump: either this put happens first and is then dropped,
+    // or it sees the bumped generation and leaves the entry alone.
+    private void cacheIfUnchanged(User user, Long generation) {
+        int stripe = stripe(user.getId());
+        profiles.asMap().compute(user.getId(), (id, cached) ->
+            generation != null && invalidations.get(stripe) == generation ? user : cached);
+    }
+
+    private static int stripe(String userId) {
+        return userId.hashCode() & (INVALIDATION_STRIPES - 1);
+    }
+
+    static Query profilesQuery(Collection<String> userIds) {
+        Query query = new Query(Criteria.where("_id").in(userIds));
+        query.fields().include("username", "email", "firstName", "lastName", "friendIds");
+        return query;
+    }
+
+    // Must be called after any write to a user document
+    public void invalidate(String... userIds) {
+        for (String userId : userIds) {
+            if (userId != null) {
+                invalidations.incrementAndGet(stripe(userId));
+                profiles.invalidate(userId);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = profiles.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", profiles.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.service;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.model.User;
+
+// Fills in `searchPrefixes` for users created before the search index existed. Every
+// instance runs it at startup unless users.search-backfill.enabled=false; once all users
+// have prefixes it finds nothing to do.
+@Component
+@ConditionalOnProperty(name = "users.search-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class UserSearchBackfill implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+
+    public UserSearchBackfill(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    static Query missingQuery() {
+        Query missing = new Query(Criteria.where("searchPrefixes").exists(false));
+        missing.fields().include("username", "firstName", "lastName");
+        return missing;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try (Stream<User> stream = mongoTemplate.stream(missingQuery(), User.class)) {
+            Iterator<User> users = stream.iterator();
+            while (users.hasNext()) {
+                User user = users.next();
+                // Skip users whose prefixes were written by a profile update in the meantime
+                mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(user.getId()).and("searchPrefixes").exists(false)),
+                    new Update().set("searchPrefixes", UserSearchService.prefixesFor(user)),
+                    User.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.example.model.User;
+
+// Prefix search over username/firstName/lastName. Every user stores the lower-cased
+// prefixes of those names in `searchPrefixes`, indexed together with username, so a search
+// is one equality match on that index, read in username order, instead of a scan and sort.
+@Service
+public class UserSearchService {
+
+    public static final int MAX_PREFIX_LENGTH = 20;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+
+    public UserSearchService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public static List<String> prefixesFor(User user) {
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String name : new String[] { user.getUsername(), user.getFirstName(), user.getLastName() }) {
+            if (name == null) {
+                continue;
+            }
+            for (String token : name.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+                for (int length = 1; length <= Math.min(token.length(), MAX_PREFIX_LENGTH); length++) {
+                    prefixes.add(token.substring(0, length));
+                }
+            }
+        }
+        return new ArrayList<>(prefixes);
+    }
+
+    // One page of users ordered by username, excluding `excludedIds`, read from the cursor one
+    // document at a time. Fetches one extra row so callers can tell whether another page
+    // exists. Callers must close the stream.
+    public Stream<User> searchStream(String query, Collection<String> excludedIds, int page, int size) {
+        return mongoTemplate.stream(pageQuery(query, excludedIds, page, size), User.class);
+    }
+
+    static Query pageQuery(String query, Collection<String> excludedIds, int page, int size) {
+        Criteria criteria = Criteria.where("_id").nin(new HashSet<>(excludedIds));
+        String term = normalize(query);
+        if (term != null) {
+            criteria = criteria.and("searchPrefixes").is(term);
+        }
+
+        Query mongoQuery = new Query(criteria)
+            .with(Sort.by(Sort.Direction.ASC, "username"))
+            .skip((long) page * size)
+            .limit(size + 1);
+        mongoQuery.fields().include("username", "email", "firstName", "lastName");
+        return mongoQuery;
+    }
+
+    public static int pageSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    private static String normalize(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        String term = query.toLowerCase(Locale.ROOT).trim().split("\\s+")[0];
+        return term.length() > MAX_PREFIX_LENGTH ? term.substring(0, MAX_PREFIX_LENGTH) : term;
+    }
+}
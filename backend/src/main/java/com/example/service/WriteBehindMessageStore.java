@@ -0,0 +1,489 @@
+package com.example.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.example.model.Conversation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Write-behind variant of the bucket store, enabled with messages.ingest.mode=buffered.
+// append() records the message in a local append log (depending on
+// messages.ingest.durability) and a bounded queue, then returns; a single writer thread
+// group-commits the queue to Mongo in one bulk write per batch of messages.ingest.batch-size
+// messages or messages.ingest.max-delay-ms, whichever comes first.
+//
+// Durability levels:
+//   log   - written to the log before append() returns; survives a process crash
+//   fsync - the log is also forced to disk (shared by concurrent senders); survives power loss
+//
+// There is no memory-only level. The conversation's seq and summary are committed before
+// append() is called, so a message lost from the queue would leave a permanent hole in the
+// seqs that /sync waits on and then skips, while the inbox shows a message nobody can read.
+//
+// Log segments are deleted once every message in them is in Mongo, and any segment left
+// at startup is replayed. Reads merge in messages that are still queued, so senders see
+// their own messages immediately.
+@Service
+@Primary
+@ConditionalOnProperty(name = "messages.ingest.mode", havingValue = "buffered")
+public class WriteBehindMessageStore implements MessageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindMessageStore.class);
+
+    public enum Durability { LOG, FSYNC }
+
+    private record Entry(String conversationId, Conversation.Message message) {
+    }
+
+    private record Pending(Entry entry, long segment) {
+    }
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final BucketedMessageStore delegate;
+    private final ObjectMapper objectMapper;
+    private final Durability durability;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long maxDelayMs;
+    private final Path logDir;
+    private final long maxSegmentBytes;
+
+    // Queued messages per conversation, for read-your-writes
+    private final Map<String, Queue<Conversation.Message>> pendingByConversation = new ConcurrentHashMap<>();
+
+    // Append log state; appends hold logLock, fsyncs hold forceLock
+    private final Object logLock = new Object();
+    private final Object forceLock = new Object();
+    private volatile FileChannel channel;
+    private long currentSegment;
+    private long segmentBytes;
+    private volatile long writtenRecords;
+    private long forcedRecords;
+    private final Map<Long, AtomicInteger> unflushedBySegment = new ConcurrentHashMap<>();
+
+    private Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder flushedMessages = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder syncFallbacks = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public WriteBehindMessageStore(BucketedMessageStore delegate, ObjectMapper objectMapper,
+                                   @Value("${messages.ingest.durability:log}") String durability,
+                                   @Value("${messages.ingest.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${messages.ingest.batch-size:500}") int batchSize,
+                                   @Value("${messages.ingest.max-delay-ms:10}") long maxDelayMs,
+                                   @Value("${messages.ingest.log-dir:./ingest-log}") String logDir,
+                                   @Value("${messages.ingest.segment-bytes:67108864}") long maxSegmentBytes) {
+        this.delegate = delegate;
+        this.objectMapper = objectMapper;
+        if ("none".equalsIgnoreCase(durability.trim())) {
+            throw new IllegalStateException("messages.ingest.durability=none is not supported: "
+                + "a queued message lost on a crash would leave a seq gap in /sync; use log or fsync");
+        }
+        this.durability = Durability.valueOf(durability.trim().toUpperCase());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.logDir = Paths.get(logDir);
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(logDir);
+        currentSegment = replay() + 1;
+        openSegment(currentSegment);
+
+        writer = new Thread(this::run, "message-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void append(String conversationId, Conversation.Message message) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+
+        Entry entry = new Entry(conversationId, message);
+        long segment = log(entry);
+
+        pendingByConversation.compute(conversationId, (id, pending) -> {
+            Queue<Conversation.Message> messages = pending != null ? pending : new ConcurrentLinkedQueue<>();
+            messages.add(message);
+            return messages;
+        });
+
+        if (!queue.offer(new Pending(entry, segment))) {
+            // Queue full: write through, so senders are slowed down instead of messages dropped
+            syncFallbacks.increment();
+            try {
+                delegate.append(conversationId, message);
+            } finally {
+                removePending(conversationId, message);
+            }
+            markFlushed(segment);
+        }
+    }
+
+    @Override
+    public List<Conversation.Message> findAll(String conversationId) {
+        // Snapshot the queue first: a message flushed in between is then found in Mongo
+        List<Conversation.Message> pending = pendingSnapshot(conversationId);
+        List<Conversation.Message> messages = merge(delegate.findAll(conversationId), pending);
+        messages.sort(Comparator.comparing(Conversation.Message::getTimestamp,
+            Comparator.nullsFirst(Comparator.naturalOrder())));
+        return messages;
+    }
+
+    @Override
+    public List<Conversation.Message> findPage(String conversationId, MessageCursor before,
+                                               MessageCursor after, int limit) {
+        List<Conversation.Message> pending = pendingSnapshot(conversationId);
+        return withPending(delegate.findPage(conversationId, before, after, limit), pending, before, after, limit);
+    }
+
+    @Override
+    public List<Conversation.Message> findPageFromPrimary(String conversationId, MessageCursor before,
+                                                         MessageCursor after, int limit) {
+        List<Conversation.Message> pending = pendingSnapshot(conversationId);
+        return withPending(delegate.findPageFromPrimary(conversationId, before, after, limit), pending, before, after, limit);
+    }
+
+    private List<Conversation.Message> withPending(List<Conversation.Message> stored, List<Conversation.Message> pending,
+                                                   MessageCursor before, MessageCursor after, int limit) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+
+        List<Conversation.Message> candidates = merge(stored, pending.stream()
+            .filter(message -> {
+                MessageCursor position = position(message);
+                return (before == null || position.compareTo(before) < 0)
+                    && (after == null || position.compareTo(after) > 0);
+            })
+            .collect(Collectors.toList()));
+        return MessageCursor.slice(candidates, WriteBehindMessageStore::position, before, after, limit);
+    }
+
+    public Map<String, Object> getMetrics() {
+        long batches = batchesWritten.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("durability", durability.name().toLowerCase());
+        metrics.put("queueDepth", queue.size());
+        metrics.put("flushedMessages", flushedMessages.sum());
+        metrics.put("batchesWritten", batches);
+        metrics.put("avgFlushLatencyMs", batches == 0 ? 0.0 : totalFlushNanos.sum() / (double) batches / 1_000_000);
+        metrics.put("maxFlushLatencyMs", maxFlushNanos.get() / 1_000_000.0);
+        metrics.put("syncFallbacks", syncFallbacks.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("openLogSegments", unflushedBySegment.size());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        FileChannel open = channel;
+        if (open != null) {
+            open.close();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Group commit: keep collecting until the batch is full or the delay is up
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) throws InterruptedException {
+        long start = System.nanoTime();
+        Map<String, List<Conversation.Message>> byConversation = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byConversation.computeIfAbsent(pending.entry().conversationId(), id -> new ArrayList<>())
+                .add(pending.entry().message());
+        }
+
+        try {
+            delegate.appendAll(byConversation);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("message ingest bulk write failed, retrying one by one", e);
+            // Part of the bulk write may have been applied, so retry with the idempotent append
+            if (!retryIndividually(batch)) {
+                // Shutting down with Mongo unavailable: the log still has these messages
+                return;
+            }
+        }
+
+        for (Pending pending : batch) {
+            removePending(pending.entry().conversationId(), pending.entry().message());
+            markFlushed(pending.segment());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        flushedMessages.add(batch.size());
+        batchesWritten.increment();
+        totalFlushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private boolean retryIndividually(List<Pending> batch) throws InterruptedException {
+        while (true) {
+            try {
+                for (Pending pending : batch) {
+                    delegate.appendIfAbsent(pending.entry().conversationId(), pending.entry().message());
+                }
+                return true;
+            } catch (RuntimeException e) {
+                failures.increment();
+                if (!running) {
+                    return false;
+                }
+                Thread.sleep(1000);
+            }
+        }
+    }
+
+    private long log(Entry entry) {
+        byte[] line;
+        try {
+            line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long segment;
+        long record;
+        synchronized (logLock) {
+            try {
+                if (segmentBytes >= maxSegmentBytes) {
+                    rollSegment();
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write message ingest log", e);
+            }
+            segmentBytes += line.length;
+            segment = currentSegment;
+            unflushedBySegment.computeIfAbsent(segment, id -> new AtomicInteger()).incrementAndGet();
+            record = ++writtenRecords;
+        }
+
+        if (durability == Durability.FSYNC) {
+            // One force covers every record written before it, so concurrent senders share it
+            synchronized (forceLock) {
+                if (forcedRecords < record) {
+                    long covered = writtenRecords;
+                    try {
+                        channel.force(false);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not sync message ingest log", e);
+                    }
+                    forcedRecords = covered;
+                }
+            }
+        }
+        return segment;
+    }
+
+    // Called with logLock held
+    private void rollSegment() throws IOException {
+        FileChannel previous = channel;
+        long previousSegment = currentSegment;
+        // Hold forceLock so no fsync runs against the channel being closed
+        synchronized (forceLock) {
+            previous.force(false);
+            forcedRecords = writtenRecords;
+            openSegment(previousSegment + 1);
+            previous.close();
+        }
+        deleteIfFlushed(previousSegment);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        channel = FileChannel.open(segmentPath(segment),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSegment = segment;
+        segmentBytes = 0;
+    }
+
+    private void markFlushed(long segment) {
+        AtomicInteger unflushed = unflushedBySegment.get(segment);
+        if (unflushed != null && unflushed.decrementAndGet() == 0) {
+            synchronized (logLock) {
+                if (segment != currentSegment) {
+                    deleteIfFlushed(segment);
+                }
+            }
+        }
+    }
+
+    // Called with logLock held, for segments that no longer receive appends
+    private void deleteIfFlushed(long segment) {
+        AtomicInteger unflushed = unflushedBySegment.get(segment);
+        if (unflushed == null || unflushed.get() == 0) {
+            unflushedBySegment.remove(segment);
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                log.warn("could not delete ingest log segment={}", segment, e);
+            }
+        }
+    }
+
+    // Writes every message left in the log by a previous run and deletes the segments.
+    // Returns the highest segment number seen (0 if none).
+    private long replay() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(logDir)) {
+            segments = files
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .sorted(Comparator.comparingLong(WriteBehindMessageStore::segmentNumber))
+                .collect(Collectors.toList());
+        }
+
+        long highest = 0;
+        int replayed = 0;
+        for (Path segment : segments) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    Entry entry;
+                    try {
+                        entry = objectMapper.readValue(line, Entry.class);
+                    } catch (IOException e) {
+                        // A torn last line from a crash mid-write; the sender never got an ack for it
+                        log.warn("skipping unreadable ingest log record segment={}", segment);
+                        continue;
+                    }
+                    delegate.appendIfAbsent(entry.conversationId(), entry.message());
+                    replayed++;
+                }
+            }
+            highest = Math.max(highest, segmentNumber(segment));
+            Files.delete(segment);
+        }
+
+        if (replayed > 0) {
+            log.info("replayed messages from the ingest log count={}", replayed);
+        }
+        return highest;
+    }
+
+    private List<Conversation.Message> pendingSnapshot(String conversationId) {
+        Queue<Conversation.Message> pending = pendingByConversation.get(conversationId);
+        return pending == null ? List.of() : new ArrayList<>(pending);
+    }
+
+    private void removePending(String conversationId, Conversation.Message message) {
+        pendingByConversation.computeIfPresent(conversationId, (id, pending) -> {
+            pending.remove(message);
+            return pending.isEmpty() ? null : pending;
+        });
+    }
+
+    private static List<Conversation.Message> merge(List<Conversation.Message> stored,
+                                                    List<Conversation.Message> pending) {
+        List<Conversation.Message> merged = new ArrayList<>(stored);
+        Set<String> ids = new HashSet<>();
+        stored.forEach(message -> ids.add(message.getId()));
+        pending.stream()
+            .filter(message -> !ids.contains(message.getId()))
+            .forEach(merged::add);
+        return merged;
+    }
+
+    private Path segmentPath(long segment) {
+        return logDir.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static MessageCursor position(Conversation.Message message) {
+        return MessageCursor.of(message.getTimestamp(), message.getId());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import jakarta.servlet.AsyncListener;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 10);
+
+    @Test
+    void asyncRequestHoldsItsPermitUntilCompletion() throws Exception {
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/messages");
+        streaming.setAsyncSupported(true);
+        filter.doFilter(streaming, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        // The handler has returned but the body is still being written
+        assertEquals(503, get().getStatus());
+
+        ((MockAsyncContext) streaming.getAsyncContext()).complete();
+        assertEquals(200, get().getStatus());
+    }
+
+    @Test
+    void timedOutAsyncRequestReleasesItsPermit() throws Exception {
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/messages");
+        streaming.setAsyncSupported(true);
+        filter.doFilter(streaming, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        MockAsyncContext context = (MockAsyncContext) streaming.getAsyncContext();
+        for (AsyncListener listener : context.getListeners()) {
+            listener.onTimeout(null);
+        }
+        context.complete();
+        assertEquals(200, get().getStatus());
+        // Released once, so the limit still holds
+        MockHttpServletRequest next = new MockHttpServletRequest("GET", "/messages");
+        next.setAsyncSupported(true);
+        filter.doFilter(next, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        assertEquals(503, get().getStatus());
+    }
+
+    @Test
+    void synchronousRequestReleasesOnReturn() throws Exception {
+        assertEquals(200, get().getStatus());
+        assertEquals(200, get().getStatus());
+    }
+
+    private MockHttpServletResponse get() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/messages"), response, (req, res) -> { });
+        return response;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.config;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.App;
+import com.example.model.User;
+import com.example.support.Latencies;
+import com.example.support.LatencyProxy;
+import com.example.support.MongoStandIn;
+
+// Load test of the whole application in both execution modes: thread-per-request on
+// Tomcat's platform pool, and virtual threads behind ConcurrencyLimitFilter. Many clients
+// call GET /inbox, which makes two Mongo queries, against a Mongo stand-in whose replies
+// are delayed like a network hop, so requests spend their time blocked on I/O.
+@Tag("benchmark")
+class ExecutionModeBenchmark {
+
+    private static final long MONGO_LATENCY_MS = 10;
+    private static final int CLIENTS = 800;
+    private static final long WARMUP_MS = 2_000;
+    private static final long DURATION_MS = 5_000;
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        try (MongoStandIn mongo = new MongoStandIn();
+             LatencyProxy proxy = new LatencyProxy(mongo.address(), MONGO_LATENCY_MS)) {
+            String userId = mongo.template("howudoinDb")
+                .insert(new User("load", "load@example.com", "hash", "Load", "Test")).getId();
+
+            for (boolean virtual : new boolean[] { false, true }) {
+                try (ConfigurableApplicationContext app = start(proxy.connectionString(), virtual)) {
+                    int port = ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+                    URI inbox = URI.create("http://127.0.0.1:" + port + "/inbox?userId=" + userId);
+                    run(inbox, WARMUP_MS, null);
+                    String mode = virtual ? "virtual threads + limiter" : "platform threads (Tomcat 200)";
+                    run(inbox, DURATION_MS, mode);
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mongoUri, boolean virtual) {
+        // As command-line arguments, which take precedence over application.properties
+        return new SpringApplicationBuilder(App.class).run(
+            "--server.port=0",
+            "--mongo.client.uri=" + mongoUri,
+            "--mongo.client.compressors=",
+            "--spring.threads.virtual.enabled=" + virtual,
+            "--security.jwt.enforce=false",
+            "--messages.migration.enabled=false",
+            "--encryption.keys=k1:" + Base64.getEncoder().encodeToString(new byte[16]),
+            "--encryption.active-key-id=k1",
+            "--encryption.reencrypt.enabled=false",
+            "--logging.level.root=WARN",
+            "--logging.level.com.example=WARN"
+        );
+    }
+
+    private static void run(URI uri, long durationMs, String mode) throws Exception {
+        HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        Latencies ok = new Latencies();
+        AtomicInteger shed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(durationMs);
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                running.add(clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        try {
+                            int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 200) {
+                                ok.record(System.nanoTime() - begin);
+                            } else if (status == 503) {
+                                shed.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : running) {
+                client.get();
+            }
+        }
+        if (mode != null) {
+            System.out.println(ok.summary("GET /inbox, " + mode + ", " + CLIENTS + " clients, Mongo RTT "
+                + MONGO_LATENCY_MS + "ms", System.nanoTime() - started) + ", shed=" + shed.get() + " failed=" + failed.get());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+
+import com.example.model.Conversation;
+import com.example.model.FriendRemoval;
+import com.example.model.FriendRequest;
+import com.example.model.Group;
+import com.example.model.GroupReceipt;
+import com.example.model.MessageBucket;
+import com.example.model.SyncCheckpoint;
+import com.example.model.User;
+import com.example.support.MongoStandIn;
+
+// The stand-in cannot explain queries, so this checks what the audit would send: the
+// shapes built from the services' own query builders, and that every hint names an index
+// the models declare
+class IndexAuditRunnerTest {
+
+    private MongoStandIn mongo;
+    private MongoTemplate mongoTemplate;
+    private Map<String, IndexAuditRunner.QueryShape> shapes;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        mongoTemplate = mongo.template();
+        shapes = new IndexAuditRunner(mongoTemplate).shapes().stream()
+            .collect(Collectors.toMap(IndexAuditRunner.QueryShape::name, Function.identity()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void pageShapesFollowTheBucketStore() {
+        IndexAuditRunner.QueryShape before = shapes.get("pageBefore");
+        assertEquals("message_buckets", before.collection());
+        assertTrue(before.filter().get("firstTimestamp", Document.class).containsKey("$lte"));
+        assertEquals(new Document("lastTimestamp", -1), before.sort());
+        assertEquals("conversation_last_first_ts", before.hint());
+
+        IndexAuditRunner.QueryShape after = shapes.get("pageAfter");
+        assertTrue(after.filter().get("lastTimestamp", Document.class).containsKey("$gte"));
+        assertEquals(new Document("firstTimestamp", 1), after.sort());
+        assertEquals("conversation_first_last_ts", after.hint());
+    }
+
+    @Test
+    void laterQueriesAreAudited() {
+        assertEquals("friend_removals", shapes.get("replayPendingRemovals").collection());
+        assertEquals("group_receipts", shapes.get("groupReceipts").collection());
+        assertEquals("sync_checkpoints", shapes.get("syncCheckpoint").collection());
+        assertEquals(new Document("username", 1), shapes.get("search").sort());
+        assertTrue(shapes.containsKey("userSearchBackfill"));
+        assertTrue(shapes.get("pairKeyBackfill").fullScanReason() != null);
+    }
+
+    @Test
+    void everyHintNamesADeclaredIndex() {
+        MongoPersistentEntityIndexResolver resolver =
+            new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        Set<String> declared = List.of(User.class, FriendRequest.class, FriendRemoval.class, Conversation.class,
+                Group.class, GroupReceipt.class, MessageBucket.class, SyncCheckpoint.class).stream()
+            .flatMap(type -> StreamSupport.stream(resolver.resolveIndexFor(type).spliterator(), false))
+            .map(index -> (String) index.getIndexOptions().get("name"))
+            .collect(Collectors.toSet());
+
+        for (IndexAuditRunner.QueryShape shape : shapes.values()) {
+            if (shape.hint() != null) {
+                assertTrue(declared.contains(shape.hint()), shape.name() + " hints " + shape.hint());
+            }
+        }
+    }
+}
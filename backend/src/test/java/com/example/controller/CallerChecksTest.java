@@ -0,0 +1,90 @@
+package com.example.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.model.Group;
+import com.example.repository.GroupRepository;
+import com.example.security.AuthenticatedUser;
+import com.example.support.MongoStandIn;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Requests naming a user other than the authenticated caller are refused before any lookup
+class CallerChecksTest {
+
+    private final AuthenticatedUser mallory = new AuthenticatedUser("mallory", "mallory@example.com", null);
+
+    @Test
+    void friendRequestsActOnlyForTheCaller() {
+        FriendController controller = new FriendController(null, null, null, null, null, null);
+
+        assertEquals(HttpStatus.FORBIDDEN, controller.sendFriendRequest(
+            Map.of("senderId", "alice", "receiverId", "bob"), mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.acceptFriendRequest(
+            Map.of("requestToken", "token", "userId", "alice"), mallory).getStatusCode());
+    }
+
+    @Test
+    void inboxIsOnlyTheCallers() {
+        InboxController controller = new InboxController(null, null);
+
+        assertEquals(HttpStatus.FORBIDDEN, controller.getInbox("alice", mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.markRead(
+            Map.of("userId", "alice", "conversationId", "c1"), mallory).getStatusCode());
+    }
+
+    @Test
+    void profileChangesOnlyTheCaller() {
+        ProfileController controller = new ProfileController(null, null, null, null);
+
+        assertEquals(HttpStatus.FORBIDDEN, controller.updateProfile(
+            Map.of("userId", "alice", "firstName", "Eve"), mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.updatePassword(
+            Map.of("userId", "alice", "currentPassword", "a", "newPassword", "b"), mallory).getStatusCode());
+    }
+
+    @Test
+    void friendReadsAreOnlyTheCallers() {
+        FriendController controller = new FriendController(null, null, null, null, null, null);
+
+        assertEquals(HttpStatus.FORBIDDEN, controller.getFriendList("alice", mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.areFriends("alice", "bob", mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.getMutualFriends("alice", "bob", mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.getSuggestions("alice", null, mallory).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.getPendingRequests("alice", mallory).getStatusCode());
+    }
+
+    @Test
+    void groupsAreOnlyReadableByMembers() {
+        try (MongoStandIn mongo = new MongoStandIn()) {
+            GroupRepository groupRepository = new MongoRepositoryFactory(mongo.template()).getRepository(GroupRepository.class);
+            Group group = new Group();
+            group.setName("Group");
+            group.setMemberIds(new ArrayList<>(List.of("alice", "bob")));
+            String groupId = groupRepository.save(group).getGroupId();
+
+            GroupController groups = new GroupController();
+            ReflectionTestUtils.setField(groups, "groupRepository", groupRepository);
+            ReflectionTestUtils.setField(groups, "jsonStreamWriter", new JsonStreamWriter(new ObjectMapper()));
+            assertEquals(HttpStatus.FORBIDDEN, groups.getGroupMessages(groupId, null, null, null, mallory).getStatusCode());
+            assertEquals(HttpStatus.FORBIDDEN, groups.getUserGroups("alice", mallory).getStatusCode());
+
+            GroupMembershipController membership = new GroupMembershipController();
+            ReflectionTestUtils.setField(membership, "groupRepository", groupRepository);
+            assertEquals(HttpStatus.FORBIDDEN, membership.getGroupById(groupId, mallory).getStatusCode());
+            assertEquals(HttpStatus.FORBIDDEN, membership.getGroupMembers(groupId, mallory).getStatusCode());
+            assertEquals(HttpStatus.FORBIDDEN, membership.addMember(groupId,
+                Map.of("memberIds", List.of("mallory")), mallory).getStatusCode());
+            assertEquals(HttpStatus.FORBIDDEN, membership.createGroup(
+                Map.of("creatorId", "alice", "name", "Mine", "memberIds", List.of("bob")), mallory).getStatusCode());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class JsonStreamWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonStreamWriter writer = new JsonStreamWriter(objectMapper);
+
+    @Test
+    void completedBodyIsWellFormed() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = writer.stream(json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("items");
+            json.writeNumber(1);
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Map.of("items", List.of(1)), objectMapper.readValue(write(response, new ByteArrayOutputStream()), Map.class));
+    }
+
+    @Test
+    void failurePartWayLeavesTheBodyMalformed() {
+        ResponseEntity<StreamingResponseBody> response = writer.stream(json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("items");
+            json.writeNumber(1);
+            throw new IllegalStateException("cursor lost");
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalStateException.class, () -> response.getBody().writeTo(out));
+        String partial = out.toString(StandardCharsets.UTF_8);
+        assertTrue(partial.startsWith("{\"items\":[1"), partial);
+        assertThrows(JsonProcessingException.class, () -> objectMapper.readTree(partial));
+    }
+
+    private static String write(ResponseEntity<StreamingResponseBody> response, ByteArrayOutputStream out) throws Exception {
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
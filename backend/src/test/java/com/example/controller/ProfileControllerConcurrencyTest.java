@@ -0,0 +1,106 @@
+package com.example.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import com.example.model.FriendRequest;
+import com.example.model.User;
+import com.example.repository.UserRepository;
+import com.example.service.FriendGraph;
+import com.example.service.FriendshipService;
+import com.example.service.ParallelLookups;
+import com.example.service.UserLookupService;
+import com.example.support.MongoStandIn;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Profile edits racing friend accepts on the same user: every accepted friend must survive
+class ProfileControllerConcurrencyTest {
+
+    private static final int FRIENDS = 40;
+
+    private MongoStandIn mongo;
+    private MongoTemplate mongoTemplate;
+    private ParallelLookups parallelLookups;
+    private ProfileController controller;
+    private FriendshipService friendshipService;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        mongoTemplate = mongo.template();
+        UserRepository userRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(UserRepository.class);
+        UserLookupService userLookupService = new UserLookupService(mongoTemplate, 1000, 60, new SimpleMeterRegistry());
+        parallelLookups = new ParallelLookups(2000);
+        controller = new ProfileController(userRepository, null, userLookupService, mongoTemplate);
+        friendshipService = new FriendshipService(mongoTemplate, userLookupService, parallelLookups,
+            new FriendGraph(mongoTemplate, userLookupService), 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        parallelLookups.shutdown();
+        mongo.close();
+    }
+
+    @Test
+    void profileUpdatesDoNotDropConcurrentlyAcceptedFriends() throws Exception {
+        User alice = mongoTemplate.insert(new User("alice", "alice@example.com", "hash", "Alice", "A"));
+        List<String> friendIds = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < FRIENDS; i++) {
+            User friend = mongoTemplate.insert(new User("friend" + i, "friend" + i + "@example.com", "hash", "F", "" + i));
+            FriendRequest request = new FriendRequest(friend.getId(), alice.getId());
+            request.setRequestToken("token-" + i);
+            mongoTemplate.insert(request);
+            friendIds.add(friend.getId());
+            tokens.add(request.getRequestToken());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < FRIENDS; i++) {
+                String token = tokens.get(i);
+                String firstName = "Alice" + i;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return friendshipService.accept(token, alice.getId());
+                }));
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return controller.updateProfile(Map.of("userId", alice.getId(), "firstName", firstName), null);
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        User stored = mongoTemplate.findById(alice.getId(), User.class);
+        assertEquals(FRIENDS, stored.getFriendIds().size());
+        assertTrue(stored.getFriendIds().containsAll(friendIds));
+        assertTrue(stored.getFirstName().startsWith("Alice"));
+        for (String friendId : friendIds) {
+            assertEquals(List.of(alice.getId()), mongoTemplate.findById(friendId, User.class).getFriendIds());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Cipher throughput in the JMH manner: warm-up rounds, then timed rounds, reporting the best
+// round's ops/s. The baseline re-creates and initializes a Cipher per message, as the code
+// before the pool did.
+@Tag("benchmark")
+class EncryptionUtilBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_MS = 500;
+    private static final String MESSAGE = "See you at the station at 6, I'll bring the tickets";
+
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil(
+        "k1:" + Base64.getEncoder().encodeToString(new byte[16]), "k1", new SimpleMeterRegistry());
+
+    @Test
+    void cipherThroughput() throws Exception {
+        SecretKeySpec key = new SecretKeySpec(new byte[16], "AES");
+        report("fresh cipher per message (AES/ECB)", () -> {
+            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            return cipher.doFinal(MESSAGE.getBytes(StandardCharsets.UTF_8));
+        });
+
+        String sealed = encryptionUtil.encrypt(MESSAGE);
+        report("EncryptionUtil.encrypt (pooled, v2)", () -> encryptionUtil.encrypt(MESSAGE));
+        report("EncryptionUtil.decrypt (pooled, v2)", () -> encryptionUtil.decrypt(sealed));
+
+        List<String> page = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            page.add(encryptionUtil.encrypt(MESSAGE + " " + i));
+        }
+        reportPages("500-message page, decrypt one by one", () -> page.stream().map(encryptionUtil::decrypt).toList());
+        reportPages("500-message page, decryptAll", () -> encryptionUtil.decryptAll(page));
+    }
+
+    private static void report(String name, Callable<?> operation) throws Exception {
+        System.out.printf("%s: %.0f ops/s%n", name, bestRate(operation));
+    }
+
+    private static void reportPages(String name, Callable<?> operation) throws Exception {
+        System.out.printf("%s: %.1f pages/s%n", name, bestRate(operation));
+    }
+
+    private static double bestRate(Callable<?> operation) throws Exception {
+        double best = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long started = System.nanoTime();
+            long end = started + TimeUnit.MILLISECONDS.toNanos(ROUND_MS);
+            long operations = 0;
+            Object sink = null;
+            while (System.nanoTime() < end) {
+                sink = operation.call();
+                operations++;
+            }
+            double rate = operations / ((System.nanoTime() - started) / 1e9);
+            if (round >= WARMUP_ROUNDS && sink != null) {
+                best = Math.max(best, rate);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EncryptionUtilTest {
+
+    private static final String KEYS = "k1:" + key(16, 1) + ",k2:" + key(32, 2);
+
+    private final EncryptionUtil k1 = new EncryptionUtil(KEYS, "k1", new SimpleMeterRegistry());
+    private final EncryptionUtil k2 = new EncryptionUtil(KEYS, "k2", new SimpleMeterRegistry());
+
+    @Test
+    void envelopeRoundTrips() {
+        String sealed = k1.encrypt("héllo wörld ✓");
+
+        assertTrue(sealed.startsWith("v2:k1:"), sealed);
+        assertEquals("héllo wörld ✓", k1.decrypt(sealed));
+        // A fresh nonce per message: the same plaintext never yields the same ciphertext
+        assertNotEquals(sealed, k1.encrypt("héllo wörld ✓"));
+    }
+
+    @Test
+    void everyKeyInTheRingStaysReadableAcrossRotation() {
+        String old = k1.encrypt("before rotation");
+
+        assertEquals("before rotation", k2.decrypt(old));
+        assertFalse(k2.isCurrent(old));
+        String rotated = k2.reencrypt(old);
+        assertTrue(rotated.startsWith("v2:k2:"), rotated);
+        assertTrue(k2.isCurrent(rotated));
+        assertEquals("before rotation", k1.decrypt(rotated));
+    }
+
+    @Test
+    void tamperedCiphertextIsRejected() {
+        String sealed = k1.encrypt("pay 10 EUR");
+        String prefix = "v2:k1:";
+        byte[] payload = Base64.getDecoder().decode(sealed.substring(prefix.length()));
+        payload[payload.length - 20] ^= 1;
+        String tampered = prefix + Base64.getEncoder().encodeToString(payload);
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> k1.decrypt(tampered));
+        assertTrue(failure.getCause() instanceof AEADBadTagException, String.valueOf(failure.getCause()));
+        // The cipher returned to the pool after the failure still works
+        assertEquals("pay 10 EUR", k1.decrypt(sealed));
+    }
+
+    @Test
+    void envelopeUnderTheWrongKeyIdIsRejected() {
+        String sealed = k1.encrypt("secret");
+
+        assertThrows(RuntimeException.class, () -> k1.decrypt(sealed.replace("v2:k1:", "v2:k2:")));
+        assertThrows(RuntimeException.class, () -> k1.decrypt(sealed.replace("v2:k1:", "v2:k9:")));
+    }
+
+    @Test
+    void bulkDecryptKeepsOrder() {
+        List<String> plain = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            plain.add("message " + i);
+        }
+
+        assertEquals(plain, k1.decryptAll(k1.encryptAll(plain)));
+    }
+
+    @Test
+    void activeKeyMustBeInTheRing() {
+        assertThrows(IllegalStateException.class, () -> new EncryptionUtil(KEYS, "k3", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> new EncryptionUtil("k1:" + key(10, 1), "k1", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> new EncryptionUtil(KEYS, "", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> new EncryptionUtil("", "", new SimpleMeterRegistry()));
+        assertThrows(IllegalStateException.class, () -> new EncryptionUtil(KEYS, "k1", "${ENCRYPTION_KEY}", new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void legacyCiphertextIsReadOnly() throws Exception {
+        String legacyKey = "0123456789abcdef";
+        Cipher ecb = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        ecb.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(legacyKey.getBytes(StandardCharsets.UTF_8), "AES"));
+        String legacy = Base64.getEncoder().encodeToString(ecb.doFinal("old message".getBytes(StandardCharsets.UTF_8)));
+        EncryptionUtil withLegacy = new EncryptionUtil(KEYS, "k1", legacyKey, new SimpleMeterRegistry());
+
+        assertEquals("old message", withLegacy.decrypt(legacy));
+        assertFalse(withLegacy.isCurrent(legacy));
+        assertTrue(withLegacy.reencrypt(legacy).startsWith("v2:k1:"));
+        // Without the legacy key the value cannot be read, but nothing is written as ECB either
+        assertThrows(RuntimeException.class, () -> k1.decrypt(legacy));
+    }
+
+    private static String key(int length, int fill) {
+        byte[] key = new byte[length];
+        Arrays.fill(key, (byte) fill);
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.security;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class JwtAuthenticationFilterTest {
+
+    private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter(null, null, true, 10, 60,
+        new SimpleMeterRegistry());
+
+    @Test
+    void actuatorEndpointsNeedNoToken() {
+        assertTrue(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/health")));
+        assertTrue(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/metrics")));
+        assertTrue(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/metrics/http.server.requests")));
+    }
+
+    @Test
+    void applicationEndpointsNeedAToken() {
+        assertFalse(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/messages")));
+        assertFalse(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/metricsx")));
+        assertFalse(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/healthcheck")));
+    }
+}
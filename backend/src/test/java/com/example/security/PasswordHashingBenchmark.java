@@ -0,0 +1,68 @@
+package com.example.security;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.support.Latencies;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Password checks per second at the production iteration count, with many more concurrent
+// logins than hashing threads, so the bounded pool and its rejections are exercised too
+@Tag("benchmark")
+class PasswordHashingBenchmark {
+
+    private static final int ITERATIONS = 210_000;
+    private static final long DURATION_MS = 5_000;
+    private static final int CALLERS = 64;
+
+    @Test
+    void loginsPerSecond() throws Exception {
+        EncryptionUtil encryptionUtil = new EncryptionUtil("k1:" + Base64.getEncoder().encodeToString(new byte[16]),
+            "k1", new SimpleMeterRegistry());
+        PasswordHashingService service = new PasswordHashingService(encryptionUtil, new PasswordUtil(), null,
+            ITERATIONS, 0, 200, 5000);
+        String hash = service.hash("correct horse");
+
+        Latencies latencies = new Latencies();
+        AtomicInteger rejected = new AtomicInteger();
+        long started = System.nanoTime();
+        long deadline = started + DURATION_MS * 1_000_000;
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                running.add(callers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        try {
+                            assertTrue(service.verify("correct horse", hash));
+                            latencies.record(System.nanoTime() - begin);
+                        } catch (RejectedExecutionException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> caller : running) {
+                caller.get();
+            }
+        } finally {
+            service.shutdown();
+        }
+
+        System.out.println(latencies.summary("logins (" + Runtime.getRuntime().availableProcessors() + " hashing threads, "
+            + CALLERS + " callers)", System.nanoTime() - started) + ", rejected=" + rejected.get());
+    }
+}
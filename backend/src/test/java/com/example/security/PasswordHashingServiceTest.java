@@ -0,0 +1,129 @@
+package com.example.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.model.User;
+import com.example.support.MongoStandIn;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PasswordHashingServiceTest {
+
+    private static final int ITERATIONS = 20_000;
+
+    private final MongoStandIn mongo = new MongoStandIn();
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil(
+        "k1:" + Base64.getEncoder().encodeToString(new byte[16]), "k1", new SimpleMeterRegistry());
+    private final PasswordUtil passwordUtil = new PasswordUtil();
+    private final PasswordHashingService service = hashing(ITERATIONS);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        mongo.close();
+    }
+
+    @Test
+    void hashVerifiesOnlyTheRightPassword() {
+        String hash = service.hash("correct horse");
+
+        assertTrue(hash.startsWith("pbkdf2-sha256$" + ITERATIONS + "$"), hash);
+        assertTrue(service.verify("correct horse", hash));
+        assertFalse(service.verify("correct horse!", hash));
+        assertFalse(service.verify(null, hash));
+        assertFalse(service.needsRehash(hash));
+    }
+
+    @Test
+    void passwordUtilValueIsUpgradedOnLogin() {
+        assertUpgraded(passwordUtil.encrypt("s3cret"));
+    }
+
+    @Test
+    void encryptionUtilValueIsUpgradedOnLogin() {
+        assertUpgraded(encryptionUtil.encrypt("s3cret"));
+    }
+
+    @Test
+    void hashWithFewerIterationsIsUpgraded() {
+        PasswordHashingService weaker = hashing(ITERATIONS / 2);
+        try {
+            assertUpgraded(weaker.hash("s3cret"));
+        } finally {
+            weaker.shutdown();
+        }
+    }
+
+    @Test
+    void upgradeDoesNotOverwriteAConcurrentPasswordChange() {
+        User user = mongo.template().insert(new User("alice", "alice@example.com", passwordUtil.encrypt("s3cret"), "A", "A"));
+        String changed = service.hash("changed");
+        mongo.template().save(withPassword(mongo.template().findById(user.getId(), User.class), changed));
+
+        assertTrue(service.verify("s3cret", user.getPassword()));
+        service.upgradeIfNeeded(user, "s3cret");
+
+        assertEquals(changed, mongo.template().findById(user.getId(), User.class).getPassword());
+    }
+
+    @Test
+    void unknownUserCostsAsMuchAsAWrongPassword() {
+        String hash = service.hash("s3cret");
+
+        // Interleaved, after a warm-up, so JIT and machine noise hit both sides alike
+        long[] known = new long[15];
+        long[] unknown = new long[15];
+        for (int i = -5; i < known.length; i++) {
+            long started = System.nanoTime();
+            service.verify("wrong", hash);
+            long middle = System.nanoTime();
+            assertFalse(service.verifyUnknownUser("wrong"));
+            long finished = System.nanoTime();
+            if (i >= 0) {
+                known[i] = middle - started;
+                unknown[i] = finished - middle;
+            }
+        }
+        long knownMedian = median(known);
+        long unknownMedian = median(unknown);
+        assertTrue(unknownMedian * 2 > knownMedian && knownMedian * 2 > unknownMedian,
+            "known=" + knownMedian + "ns unknown=" + unknownMedian + "ns");
+    }
+
+    private void assertUpgraded(String legacy) {
+        User user = mongo.template().insert(new User("alice", "alice@example.com", legacy, "A", "A"));
+        assertTrue(service.needsRehash(legacy));
+        assertTrue(service.verify("s3cret", legacy));
+
+        service.upgradeIfNeeded(user, "s3cret");
+
+        String stored = mongo.template().findById(user.getId(), User.class).getPassword();
+        assertTrue(stored.startsWith("pbkdf2-sha256$" + ITERATIONS + "$"), stored);
+        assertEquals(stored, user.getPassword());
+        assertTrue(service.verify("s3cret", stored));
+        assertFalse(service.verify("wrong", stored));
+    }
+
+    private PasswordHashingService hashing(int iterations) {
+        return new PasswordHashingService(encryptionUtil, passwordUtil, mongo.template(), iterations, 2, 10, 5000);
+    }
+
+    private static User withPassword(User user, String password) {
+        user.setPassword(password);
+        return user;
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
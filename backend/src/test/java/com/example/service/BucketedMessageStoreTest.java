@@ -0,0 +1,137 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.model.Conversation;
+import com.example.model.MessageBucket;
+import com.example.support.MongoStandIn;
+
+class BucketedMessageStoreTest {
+
+    private static final String CONVERSATION_ID = "conv-1";
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private MongoStandIn mongo;
+    private BucketedMessageStore store;
+    private ReactiveMessagingService reactive;
+    private final List<Conversation.Message> all = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        store = new BucketedMessageStore(mongo.template(), mongo.template(), 10);
+        reactive = new ReactiveMessagingService(mongo.reactiveTemplate(), mongo.reactiveTemplate(), null, 10, "sync");
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void latestPageIncludesNewerMessagesOfAnOlderBucket() {
+        // Bucket A opened first and kept taking messages while B was open too
+        bucket(0, 1, 2, 3, 4, 50, 51);
+        bucket(10, 11, 12, 13, 14, 15, 16, 17);
+
+        assertEquals(List.of(14L, 15L, 16L, 17L, 50L, 51L), minutes(store.findPage(CONVERSATION_ID, null, null, 6)));
+        assertEquals(List.of(14L, 15L, 16L, 17L, 50L, 51L), minutes(reactivePage(null, null, 6)));
+    }
+
+    @Test
+    void forwardPageIncludesOlderMessagesOfALaterBucket() {
+        bucket(10, 11, 12, 13, 14, 15);
+        // Starts later but reaches back before the first bucket's end
+        bucket(12, 20, 21, 22);
+
+        MessageCursor after = MessageCursor.of(T0.plusMinutes(10), null);
+        List<Long> expected = List.of(10L, 11L, 12L, 12L);
+        assertEquals(expected, minutes(store.findPage(CONVERSATION_ID, null, after, 4)));
+        assertEquals(expected, minutes(reactivePage(null, after, 4)));
+    }
+
+    @Test
+    void pagesMatchAFullSortOverRandomOverlappingBuckets() {
+        Random random = new Random(42);
+        for (int b = 0; b < 12; b++) {
+            int start = random.nextInt(200);
+            long[] offsets = new long[1 + random.nextInt(10)];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = start + random.nextInt(40);
+            }
+            bucket(offsets);
+        }
+
+        Function<Conversation.Message, MessageCursor> position = BucketedMessageStore::position;
+        List<Conversation.Message> sorted = new ArrayList<>(all);
+        sorted.sort(Comparator.comparing(position));
+        for (int limit : new int[] { 1, 5, 17 }) {
+            for (int i = 0; i < sorted.size(); i += 7) {
+                MessageCursor cursor = position.apply(sorted.get(i));
+                assertPage(cursor, null, limit);
+                assertPage(null, cursor, limit);
+            }
+            assertPage(null, null, limit);
+        }
+    }
+
+    @Test
+    void primaryPageSeesWritesTheSecondaryHasNot() {
+        // A database that has received nothing stands in for a lagging secondary
+        BucketedMessageStore lagging = new BucketedMessageStore(mongo.template(), mongo.template("lagging"), 10);
+        bucket(1, 2, 3);
+
+        assertEquals(List.of(), lagging.findPage(CONVERSATION_ID, null, null, 10));
+        assertEquals(List.of(1L, 2L, 3L), minutes(lagging.findPageFromPrimary(CONVERSATION_ID, null, null, 10)));
+    }
+
+    private void assertPage(MessageCursor before, MessageCursor after, int limit) {
+        List<String> expected = ids(MessageCursor.slice(all, BucketedMessageStore::position, before, after, limit));
+        assertEquals(expected, ids(store.findPage(CONVERSATION_ID, before, after, limit)));
+        assertEquals(expected, ids(reactivePage(before, after, limit)));
+    }
+
+    private List<Conversation.Message> reactivePage(MessageCursor before, MessageCursor after, int limit) {
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(CONVERSATION_ID);
+        return reactive.loadPage(conversation, before, after, limit).block();
+    }
+
+    private void bucket(long... minutes) {
+        List<Conversation.Message> messages = new ArrayList<>();
+        for (long minute : minutes) {
+            Conversation.Message message = new Conversation.Message("sender", "text", T0.plusMinutes(minute), MessageStatus.SENT);
+            message.setId(new ObjectId().toHexString());
+            messages.add(message);
+        }
+        all.addAll(messages);
+
+        MessageBucket bucket = new MessageBucket();
+        bucket.setConversationId(CONVERSATION_ID);
+        bucket.setCount(messages.size());
+        bucket.setMessages(messages);
+        bucket.setFirstTimestamp(messages.stream().map(Conversation.Message::getTimestamp).min(Comparator.naturalOrder()).get());
+        bucket.setLastTimestamp(messages.stream().map(Conversation.Message::getTimestamp).max(Comparator.naturalOrder()).get());
+        mongo.template().insert(bucket);
+    }
+
+    private static List<Long> minutes(List<Conversation.Message> page) {
+        return page.stream().map(message -> java.time.Duration.between(T0, message.getTimestamp()).toMinutes()).toList();
+    }
+
+    private static List<String> ids(List<Conversation.Message> page) {
+        return page.stream().map(Conversation.Message::getId).toList();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.model.User;
+import com.example.support.MongoStandIn;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FriendGraphTest {
+
+    private MongoStandIn mongo;
+    private MongoTemplate mongoTemplate;
+    private FriendGraph friendGraph;
+    private String aliceId;
+    private String bobId;
+    private String carolId;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        mongoTemplate = mongo.template();
+        friendGraph = new FriendGraph(mongoTemplate, new UserLookupService(mongoTemplate, 1000, 60, new SimpleMeterRegistry()));
+        aliceId = mongoTemplate.insert(new User("alice", "alice@example.com", "hash", "Alice", "A")).getId();
+        bobId = mongoTemplate.insert(new User("bob", "bob@example.com", "hash", "Bob", "B")).getId();
+        carolId = mongoTemplate.insert(new User("carol", "carol@example.com", "hash", "Carol", "C")).getId();
+        befriend(aliceId, bobId);
+        befriend(bobId, carolId);
+        friendGraph.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void answersFromTheLoadedGraph() {
+        assertTrue(friendGraph.areFriends(aliceId, bobId));
+        assertTrue(friendGraph.areFriends(carolId, bobId));
+        assertFalse(friendGraph.areFriends(aliceId, carolId));
+        assertEquals(List.of(bobId), friendGraph.mutualFriends(aliceId, carolId));
+        assertEquals(List.of(new FriendGraph.Suggestion(carolId, 1)), friendGraph.suggestions(aliceId, 10));
+    }
+
+    @Test
+    void friendshipMissingFromTheGraphIsConfirmedInMongo() {
+        // Accepted on another instance after this one loaded its graph
+        befriend(aliceId, carolId);
+        assertFalse(friendGraph.linked(aliceId, carolId));
+
+        assertTrue(friendGraph.areFriends(aliceId, carolId));
+        assertTrue(friendGraph.linked(aliceId, carolId));
+        assertTrue(friendGraph.linked(carolId, aliceId));
+    }
+
+    @Test
+    void unknownUsersAreNotFriends() {
+        assertFalse(friendGraph.areFriends(aliceId, "missing"));
+        assertFalse(friendGraph.areFriends(null, aliceId));
+    }
+
+    @Test
+    void beforeTheFirstLoadMongoAnswers() {
+        FriendGraph unloaded = new FriendGraph(mongoTemplate,
+            new UserLookupService(mongoTemplate, 1000, 60, new SimpleMeterRegistry()));
+        assertTrue(unloaded.areFriends(aliceId, bobId));
+        assertFalse(unloaded.areFriends(aliceId, carolId));
+    }
+
+    @Test
+    void intSetHoldsDistinctValues() {
+        FriendGraph.IntSet set = FriendGraph.IntSet.of(new int[] { 5, 0, 5, 1_000_000, 7 });
+        assertEquals(4, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(1_000_000));
+        assertFalse(set.contains(6));
+        int[] values = set.values();
+        Arrays.sort(values);
+        assertArrayEquals(new int[] { 0, 5, 7, 1_000_000 }, values);
+    }
+
+    @Test
+    void intSetWithAndWithoutLeaveTheOriginalUnchanged() {
+        FriendGraph.IntSet set = FriendGraph.IntSet.of(new int[] { 1, 2 });
+        FriendGraph.IntSet added = set.with(3);
+        FriendGraph.IntSet removed = added.without(1);
+
+        assertFalse(set.contains(3));
+        assertTrue(added.contains(3));
+        assertEquals(3, added.size());
+        assertFalse(removed.contains(1));
+        assertEquals(2, removed.size());
+        assertSame(set, set.with(2));
+        assertSame(set, set.without(9));
+        assertSame(FriendGraph.IntSet.EMPTY, FriendGraph.IntSet.of(new int[0]));
+        assertFalse(FriendGraph.IntSet.EMPTY.contains(0));
+    }
+
+    @Test
+    void intSetFindsEveryMemberOfALargeSet() {
+        int[] members = IntStream.range(0, 5000).map(i -> i * 3).toArray();
+        FriendGraph.IntSet set = FriendGraph.IntSet.of(members);
+        assertEquals(members.length, set.size());
+        for (int i = 0; i < 15_000; i++) {
+            assertEquals(i % 3 == 0, set.contains(i), "value " + i);
+        }
+    }
+
+    private void befriend(String userId, String friendId) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), new Update().addToSet("friendIds", friendId), User.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(friendId)), new Update().addToSet("friendIds", userId), User.class);
+    }
+}
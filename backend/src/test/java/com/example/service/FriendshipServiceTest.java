@@ -0,0 +1,130 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import com.example.model.FriendRemoval;
+import com.example.model.FriendRequest;
+import com.example.model.User;
+import com.example.support.MongoStandIn;
+import com.mongodb.client.result.UpdateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FriendshipServiceTest {
+
+    private MongoStandIn mongo;
+    private ParallelLookups parallelLookups;
+    private FriendGraph friendGraph;
+    private FriendshipService friendshipService;
+    // Updates to this user's document fail, as if its write had timed out
+    private final AtomicReference<String> failingUserId = new AtomicReference<>();
+    private String aliceId;
+    private String bobId;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        MongoTemplate mongoTemplate = new MongoTemplate(mongo.template().getMongoDatabaseFactory()) {
+            @Override
+            public UpdateResult updateFirst(Query query, UpdateDefinition update, Class<?> entityClass) {
+                String failing = failingUserId.get();
+                if (failing != null && entityClass == User.class && failing.equals(query.getQueryObject().get("_id"))) {
+                    throw new DataAccessResourceFailureException("write to " + failing + " failed");
+                }
+                return super.updateFirst(query, update, entityClass);
+            }
+        };
+        UserLookupService userLookupService = new UserLookupService(mongoTemplate, 1000, 60, new SimpleMeterRegistry());
+        parallelLookups = new ParallelLookups(2000);
+        friendGraph = new FriendGraph(mongoTemplate, userLookupService);
+        // Replays pick up every entry, however recent
+        friendshipService = new FriendshipService(mongoTemplate, userLookupService, parallelLookups, friendGraph, -1);
+
+        User alice = mongo.template().insert(new User("alice", "alice@example.com", "hash", "Alice", "A"));
+        User bob = mongo.template().insert(new User("bob", "bob@example.com", "hash", "Bob", "B"));
+        aliceId = alice.getId();
+        bobId = bob.getId();
+        acceptRequest("token-1");
+        friendGraph.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        parallelLookups.shutdown();
+        mongo.close();
+    }
+
+    @Test
+    void halfFinishedRemovalIsReplayed() {
+        failingUserId.set(bobId);
+        assertThrows(DataAccessResourceFailureException.class, () -> friendshipService.remove(aliceId, bobId));
+
+        // Alice's side was pulled, Bob's was not; the outbox entry survives the failure
+        assertEquals(List.of(), friendIdsOf(aliceId));
+        assertEquals(List.of(aliceId), friendIdsOf(bobId));
+        assertEquals(1, mongo.template().count(new Query(), FriendRemoval.class));
+
+        failingUserId.set(null);
+        friendshipService.replayPendingRemovals();
+
+        assertEquals(List.of(), friendIdsOf(aliceId));
+        assertEquals(List.of(), friendIdsOf(bobId));
+        assertEquals(0, mongo.template().count(new Query(), FriendRemoval.class));
+        assertFalse(friendGraph.areFriends(bobId, aliceId));
+    }
+
+    @Test
+    void laterAcceptWinsOverAStrandedRemoval() {
+        failingUserId.set(bobId);
+        assertThrows(DataAccessResourceFailureException.class, () -> friendshipService.remove(aliceId, bobId));
+        failingUserId.set(null);
+
+        acceptRequest("token-2");
+        friendshipService.replayPendingRemovals();
+
+        assertEquals(List.of(bobId), friendIdsOf(aliceId));
+        assertEquals(List.of(aliceId), friendIdsOf(bobId));
+        assertTrue(friendGraph.areFriends(aliceId, bobId));
+    }
+
+    @Test
+    void laterRemovalWinsOverAStrandedAccept() {
+        FriendRequest stranded = new FriendRequest(bobId, aliceId);
+        stranded.setRequestToken("token-2");
+        stranded.setStatus("ACCEPTED");
+        stranded.setAcceptedAt(LocalDateTime.now());
+        mongo.template().insert(stranded);
+
+        friendshipService.remove(aliceId, bobId);
+        friendshipService.replayPendingAccepts();
+
+        assertEquals(List.of(), friendIdsOf(aliceId));
+        assertEquals(List.of(), friendIdsOf(bobId));
+    }
+
+    private void acceptRequest(String token) {
+        FriendRequest request = new FriendRequest(bobId, aliceId);
+        request.setRequestToken(token);
+        mongo.template().insert(request);
+        assertEquals(FriendshipService.AcceptResult.ACCEPTED, friendshipService.accept(token, aliceId));
+    }
+
+    private List<String> friendIdsOf(String userId) {
+        return mongo.template().findById(userId, User.class).getFriendIds();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.model.Group;
+import com.example.support.MongoStandIn;
+
+class GroupMessageStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private MongoStandIn mongo;
+    private GroupMessageStore store;
+    private ReactiveMessagingService reactive;
+    private Group group;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        store = new GroupMessageStore(mongo.template(), new BucketedMessageStore(mongo.template(), mongo.template(), 10));
+        reactive = new ReactiveMessagingService(mongo.reactiveTemplate(), mongo.reactiveTemplate(), null, 10, "sync");
+
+        // Two messages still embedded from before the bucket migration
+        group = new Group();
+        group.setGroupId("group-1");
+        group.setName("Group");
+        group.setMemberIds(new ArrayList<>(List.of("alice", "bob")));
+        group.setMessages(new ArrayList<>(List.of(message("alice", 0, 1L), message("bob", 1, 2L))));
+        group.setMessageSeq(2);
+        mongo.template().insert(group);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void pageMergesEmbeddedAndBucketedMessages() {
+        store.append(group.getGroupId(), message("alice", 2, null), new Update());
+
+        Group loaded = mongo.template().findById(group.getGroupId(), Group.class);
+        assertEquals(List.of(1L, 2L, 3L), seqs(store.findPage(loaded, null, null, 10)));
+        assertEquals(List.of(2L, 3L), seqs(store.findPage(loaded, null, null, 2)));
+        assertEquals(List.of(1L, 2L, 3L), seqs(reactive.findGroupPage(loaded, null, null, 10).block()));
+
+        MessageCursor before = MessageCursor.of(T0.plusMinutes(2), null);
+        assertEquals(List.of(1L, 2L), seqs(store.findPage(loaded, before, null, 10)));
+        assertEquals(List.of(1L, 2L), seqs(reactive.findGroupPage(loaded, before, null, 10).block()));
+    }
+
+    @Test
+    void addMembersReturnsTheSeqTheyJoinedAt() {
+        assertEquals(2, store.addMembers(group.getGroupId(), List.of("carol")));
+        assertEquals(List.of("alice", "bob", "carol"),
+            mongo.template().findById(group.getGroupId(), Group.class).getMemberIds());
+        assertEquals(-1, store.addMembers("missing", List.of("carol")));
+    }
+
+    private static Group.GroupMessage message(String senderId, int minute, Long seq) {
+        Group.GroupMessage message = new Group.GroupMessage(senderId, "text", T0.plusMinutes(minute), MessageStatus.SENT);
+        message.setId("m" + minute);
+        message.setSeq(seq);
+        return message;
+    }
+
+    private static List<Long> seqs(List<Group.GroupMessage> page) {
+        return page.stream().map(Group.GroupMessage::getSeq).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+class MessageCursorTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_000_000);
+
+    @Test
+    void encodeAndParseRoundTrip() {
+        MessageCursor cursor = MessageCursor.of(T0, "65f0c0ffee");
+        MessageCursor parsed = MessageCursor.parse(cursor.encode());
+
+        assertEquals(T0, parsed.getTimestamp());
+        assertEquals("65f0c0ffee", parsed.getId());
+        assertEquals(0, cursor.compareTo(parsed));
+    }
+
+    @Test
+    void cursorWithoutIdRoundTrips() {
+        MessageCursor parsed = MessageCursor.parse(MessageCursor.of(T0, null).encode());
+
+        assertEquals(T0, parsed.getTimestamp());
+        assertNull(parsed.getId());
+    }
+
+    @Test
+    void missingCursorIsNullAndMalformedIsRejected() {
+        assertNull(MessageCursor.parse(null));
+        assertNull(MessageCursor.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.parse("not-a-cursor"));
+    }
+
+    @Test
+    void ordersByTimestampThenId() {
+        MessageCursor a = MessageCursor.of(T0, "a");
+        MessageCursor b = MessageCursor.of(T0, "b");
+        MessageCursor later = MessageCursor.of(T0.plusNanos(1_000_000), "a");
+
+        assertTrue(a.compareTo(b) < 0);
+        assertTrue(b.compareTo(later) < 0);
+        assertTrue(MessageCursor.of(T0, null).compareTo(a) < 0);
+    }
+
+    @Test
+    void pageSizeIsDefaultedAndCapped() {
+        assertEquals(MessageCursor.DEFAULT_PAGE_SIZE, MessageCursor.pageSize(null));
+        assertEquals(MessageCursor.DEFAULT_PAGE_SIZE, MessageCursor.pageSize(0));
+        assertEquals(10, MessageCursor.pageSize(10));
+        assertEquals(MessageCursor.MAX_PAGE_SIZE, MessageCursor.pageSize(10_000));
+    }
+
+    @Test
+    void sliceTakesNewestBeforeAndOldestAfter() {
+        List<Integer> minutes = List.of(5, 1, 4, 2, 3, 6);
+        Function<Integer, MessageCursor> position = minute -> MessageCursor.of(T0.plusMinutes(minute), null);
+
+        assertEquals(List.of(4, 5, 6), MessageCursor.slice(minutes, position, null, null, 3));
+        assertEquals(List.of(2, 3), MessageCursor.slice(minutes, position, position.apply(4), null, 2));
+        assertEquals(List.of(3, 4), MessageCursor.slice(minutes, position, null, position.apply(2), 2));
+        assertEquals(List.of(3), MessageCursor.slice(minutes, position, position.apply(4), position.apply(2), 5));
+    }
+}
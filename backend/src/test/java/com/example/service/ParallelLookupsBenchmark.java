@@ -0,0 +1,86 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.example.model.FriendRequest;
+import com.example.model.User;
+import com.example.support.Latencies;
+import com.example.support.LatencyProxy;
+import com.example.support.MongoStandIn;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+// Latency of POST /friends/add's two lookups, the users and any existing request, made one
+// after the other and as two forks of a ParallelLookups scope, against a Mongo stand-in
+// whose replies are delayed like a network hop
+@Tag("benchmark")
+class ParallelLookupsBenchmark {
+
+    private static final long MONGO_LATENCY_MS = 10;
+    private static final int WARMUP = 50;
+    private static final int ROUNDS = 300;
+
+    @Test
+    void sequentialVersusForked() throws Exception {
+        try (MongoStandIn mongo = new MongoStandIn();
+             LatencyProxy proxy = new LatencyProxy(mongo.address(), MONGO_LATENCY_MS);
+             MongoClient client = MongoClients.create(proxy.connectionString())) {
+            String senderId = mongo.template().insert(new User("a", "a@example.com", "hash", "A", "A")).getId();
+            String receiverId = mongo.template().insert(new User("b", "b@example.com", "hash", "B", "B")).getId();
+            mongo.template().insert(new FriendRequest(senderId, receiverId));
+
+            MongoTemplate template = new MongoTemplate(client, "test");
+            Supplier<List<User>> users = () -> template.find(
+                Query.query(Criteria.where("_id").in(senderId, receiverId)), User.class);
+            Supplier<List<FriendRequest>> requests = () -> template.find(
+                Query.query(Criteria.where("senderId").is(senderId).and("receiverId").is(receiverId)), FriendRequest.class);
+
+            ParallelLookups parallelLookups = new ParallelLookups(2000);
+            try {
+                Runnable sequential = () -> {
+                    assertEquals(2, users.get().size());
+                    assertEquals(1, requests.get().size());
+                };
+                Runnable forked = () -> {
+                    try (ParallelLookups.Scope scope = parallelLookups.open()) {
+                        Supplier<List<User>> foundUsers = scope.fork(users);
+                        Supplier<List<FriendRequest>> foundRequests = scope.fork(requests);
+                        scope.join();
+                        assertEquals(2, foundUsers.get().size());
+                        assertEquals(1, foundRequests.get().size());
+                    }
+                };
+
+                measure("sequential", sequential, WARMUP, null);
+                measure("forked", forked, WARMUP, null);
+                measure("sequential", sequential, ROUNDS, "friends.add lookups, sequential");
+                measure("forked", forked, ROUNDS, "friends.add lookups, ParallelLookups");
+            } finally {
+                parallelLookups.shutdown();
+            }
+        }
+    }
+
+    private static void measure(String name, Runnable lookups, int rounds, String label) {
+        Latencies latencies = new Latencies();
+        long started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            long begin = System.nanoTime();
+            lookups.run();
+            latencies.record(System.nanoTime() - begin);
+        }
+        if (label != null) {
+            System.out.println(latencies.summary(label + ", Mongo RTT " + MONGO_LATENCY_MS + "ms", System.nanoTime() - started));
+        }
+    }
+}
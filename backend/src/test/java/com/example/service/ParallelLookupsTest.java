@@ -0,0 +1,88 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelLookupsTest {
+
+    private final ParallelLookups lookups = new ParallelLookups(200);
+
+    @AfterEach
+    void tearDown() {
+        lookups.shutdown();
+    }
+
+    @Test
+    void forksRunConcurrently() {
+        long started = System.nanoTime();
+        try (ParallelLookups.Scope scope = lookups.open()) {
+            Supplier<String> first = scope.fork(() -> sleepThen(100, "a"));
+            Supplier<String> second = scope.fork(() -> sleepThen(100, "b"));
+            scope.join();
+            assertEquals("a", first.get());
+            assertEquals("b", second.get());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 190);
+    }
+
+    @Test
+    void missedDeadlineRejectsAndInterruptsRunningForks() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+        try (ParallelLookups.Scope scope = lookups.open()) {
+            scope.fork(() -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            assertThrows(RejectedExecutionException.class, scope::join);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsedMs >= 200 && elapsedMs < 1000, "join returned after " + elapsedMs + "ms");
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "the running fork was not interrupted");
+    }
+
+    @Test
+    void firstFailureIsRethrownWithoutWaitingForTheRest() {
+        IllegalArgumentException failure = new IllegalArgumentException("boom");
+        long started = System.nanoTime();
+        try (ParallelLookups.Scope scope = lookups.open()) {
+            scope.fork(() -> sleepThen(150, "slow"));
+            scope.fork(() -> {
+                throw failure;
+            });
+            assertSame(failure, assertThrows(IllegalArgumentException.class, scope::join));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 140);
+    }
+
+    @Test
+    void resultsCannotBeReadBeforeJoin() {
+        try (ParallelLookups.Scope scope = lookups.open()) {
+            Supplier<String> pending = scope.fork(() -> sleepThen(100, "late"));
+            assertThrows(IllegalStateException.class, pending::get);
+        }
+    }
+
+    private static String sleepThen(long millis, String value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
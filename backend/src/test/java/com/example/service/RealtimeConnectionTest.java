@@ -0,0 +1,119 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class RealtimeConnectionTest {
+
+    // A session whose first send blocks until released, and that records every call and
+    // whether two of them ever overlapped
+    private static class SlowSession {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean open = new AtomicBoolean(true);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final List<Object> calls = new CopyOnWriteArrayList<>();
+
+        final WebSocketSession session = (WebSocketSession) Proxy.newProxyInstance(
+            WebSocketSession.class.getClassLoader(), new Class<?>[] { WebSocketSession.class },
+            (proxy, method, args) -> switch (method.getName()) {
+                case "isOpen" -> open.get();
+                case "sendMessage" -> call(() -> {
+                    sending.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    calls.add(((TextMessage) args[0]).getPayload());
+                });
+                case "close" -> call(() -> {
+                    open.set(false);
+                    calls.add(args == null ? CloseStatus.NORMAL : args[0]);
+                });
+                case "getId" -> "session-1";
+                default -> null;
+            });
+
+        private Object call(Action action) throws Exception {
+            if (inFlight.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            try {
+                action.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return null;
+        }
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    @Test
+    void closeDuringASendWaitsForTheDrainer() throws Exception {
+        SlowSession slow = new SlowSession();
+        RealtimeConnection connection = new RealtimeConnection(slow.session, "alice", 4);
+        connection.enqueue(new TextMessage("first"));
+        connection.enqueue(new TextMessage("second"));
+
+        Thread drainer = new Thread(() -> connection.drain(latency -> { }));
+        drainer.start();
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+
+        connection.close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertTrue(slow.open.get(), "closed while a send was in progress");
+
+        slow.release.countDown();
+        drainer.join(5000);
+        assertFalse(slow.overlapped.get());
+        // The send in progress finishes, the rest of the queue is dropped, then the close
+        assertEquals(List.of("first", CloseStatus.SESSION_NOT_RELIABLE), slow.calls);
+        assertFalse(connection.hasPending());
+    }
+
+    @Test
+    void overflowClosesThroughTheDrainer() throws Exception {
+        SlowSession slow = new SlowSession();
+        RealtimeConnection connection = new RealtimeConnection(slow.session, "alice", 1);
+        connection.enqueue(new TextMessage("first"));
+
+        Thread drainer = new Thread(() -> connection.drain(latency -> { }));
+        drainer.start();
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+
+        // The drainer is stuck on "first"; two more drops exceed the limit of one
+        assertEquals(0, connection.enqueue(new TextMessage("second")));
+        assertEquals(1, connection.enqueue(new TextMessage("third")));
+        assertEquals(1, connection.enqueue(new TextMessage("fourth")));
+        assertTrue(slow.open.get(), "closed while a send was in progress");
+
+        slow.release.countDown();
+        drainer.join(5000);
+        assertFalse(slow.overlapped.get());
+        assertEquals(List.of("first", CloseStatus.SESSION_NOT_RELIABLE), slow.calls);
+    }
+
+    @Test
+    void closeWithNoDrainRunningClosesRightAway() {
+        SlowSession slow = new SlowSession();
+        RealtimeConnection connection = new RealtimeConnection(slow.session, "alice", 4);
+
+        connection.close(CloseStatus.GOING_AWAY);
+
+        assertEquals(List.of(CloseStatus.GOING_AWAY), slow.calls);
+    }
+}
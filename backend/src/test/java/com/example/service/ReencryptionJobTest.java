@@ -0,0 +1,66 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.security.EncryptionUtil;
+import com.example.support.MongoStandIn;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReencryptionJobTest {
+
+    private static final String KEYS = "k0:" + Base64.getEncoder().encodeToString(new byte[16])
+        + ",k1:" + Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final MongoStandIn mongo = new MongoStandIn();
+    private ReencryptionJob job;
+
+    @AfterEach
+    void tearDown() {
+        if (job != null) {
+            job.shutdown();
+        }
+        mongo.close();
+    }
+
+    @Test
+    void throttledPassRunsOffTheSchedulerThread() throws Exception {
+        EncryptionUtil previous = new EncryptionUtil(KEYS, "k0", new SimpleMeterRegistry());
+        EncryptionUtil current = new EncryptionUtil(KEYS, "k1", new SimpleMeterRegistry());
+        for (int i = 0; i < 3; i++) {
+            mongo.template().getCollection("conversations")
+                .insertOne(new Document("lastMessagePreview", previous.encrypt("preview " + i)));
+        }
+        // One document per batch at two values a second: the pass sleeps about a second
+        job = new ReencryptionJob(mongo.template(), current, 1, 2);
+
+        long started = System.nanoTime();
+        job.run();
+        job.run();
+        assertTrue(System.nanoTime() - started < 500_000_000L, "run() must not wait for the pass");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<String> previews = previews();
+        while (!previews.stream().allMatch(current::isCurrent) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            previews = previews();
+        }
+        assertTrue(previews.stream().allMatch(current::isCurrent));
+        assertEquals(List.of("preview 0", "preview 1", "preview 2"), previews.stream().map(current::decrypt).sorted().toList());
+    }
+
+    private List<String> previews() {
+        return mongo.template().getCollection("conversations").find()
+            .map(document -> document.getString("lastMessagePreview"))
+            .into(new ArrayList<>());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.model.User;
+import com.example.support.MongoStandIn;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UserLookupServiceTest {
+
+    private MongoStandIn mongo;
+    private Runnable afterFind = () -> { };
+    private UserLookupService lookup;
+    private String aliceId;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoStandIn();
+        // Runs the hook between the batched read and the cache put
+        MongoTemplate template = new MongoTemplate(mongo.template().getMongoDatabaseFactory()) {
+            @Override
+            public <T> List<T> find(Query query, Class<T> entityClass) {
+                List<T> result = super.find(query, entityClass);
+                Runnable hook = afterFind;
+                afterFind = () -> { };
+                hook.run();
+                return result;
+            }
+        };
+        lookup = new UserLookupService(template, 1000, 60, new SimpleMeterRegistry());
+        aliceId = mongo.template().insert(new User("alice", "alice@example.com", "hash", "Alice", "A")).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void cachesWhatItLoads() {
+        assertEquals("Alice", lookup.findById(aliceId).orElseThrow().getFirstName());
+        rename("Alicia");
+
+        assertEquals("Alice", lookup.findById(aliceId).orElseThrow().getFirstName());
+        lookup.invalidate(aliceId);
+        assertEquals("Alicia", lookup.findById(aliceId).orElseThrow().getFirstName());
+    }
+
+    @Test
+    void invalidateDuringALoadIsNotUndone() {
+        afterFind = () -> {
+            rename("Alicia");
+            lookup.invalidate(aliceId);
+        };
+
+        // This read predates the write, so it may be returned once but must not be cached
+        assertEquals("Alice", lookup.findById(aliceId).orElseThrow().getFirstName());
+        assertEquals("Alicia", lookup.findById(aliceId).orElseThrow().getFirstName());
+    }
+
+    private void rename(String firstName) {
+        mongo.template().updateFirst(Query.query(Criteria.where("_id").is(aliceId)),
+            new Update().set("firstName", firstName), User.class);
+    }
+}
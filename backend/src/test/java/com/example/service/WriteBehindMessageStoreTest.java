@@ -0,0 +1,27 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class WriteBehindMessageStoreTest {
+
+    @Test
+    void memoryOnlyDurabilityIsRefused() {
+        assertThrows(IllegalStateException.class, () -> store("none"));
+        assertThrows(IllegalStateException.class, () -> store(" NONE "));
+    }
+
+    @Test
+    void logAndFsyncAreAccepted() {
+        assertDoesNotThrow(() -> store("log"));
+        assertDoesNotThrow(() -> store("fsync"));
+    }
+
+    private static WriteBehindMessageStore store(String durability) {
+        return new WriteBehindMessageStore(null, new ObjectMapper(), durability, 10, 5, 10, "./ingest-log", 1024);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.support;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Per-operation latencies recorded by a benchmark, summarized as throughput and percentiles
+public final class Latencies {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    public synchronized double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(count - 1, Math.ceil(percentile / 100 * count) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    // e.g. "logins: 412.3/s over 5000ms, p50=9.81ms p99=21.40ms (n=2062)"
+    public String summary(String name, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        return String.format("%s: %.1f/s over %dms, p50=%.2fms p99=%.2fms (n=%d)", name, count() / seconds,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), percentileMillis(50), percentileMillis(99), count());
+    }
+}
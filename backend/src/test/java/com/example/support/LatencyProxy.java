@@ -0,0 +1,81 @@
+package com.example.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// TCP relay that holds every reply for a fixed delay before passing it on, so a local
+// MongoStandIn answers with the round-trip time of a real network hop. Requests pass
+// straight through; each connection is relayed by two virtual threads.
+public final class LatencyProxy implements AutoCloseable {
+
+    private final InetSocketAddress target;
+    private final long latencyMs;
+    private final ServerSocket server;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LatencyProxy(InetSocketAddress target, long latencyMs) throws IOException {
+        this.target = target;
+        this.latencyMs = latencyMs;
+        this.server = new ServerSocket(0, 512, InetAddress.getLoopbackAddress());
+        threads.execute(this::accept);
+    }
+
+    public String connectionString() {
+        return "mongodb://127.0.0.1:" + server.getLocalPort();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                Socket upstream = new Socket(target.getAddress(), target.getPort());
+                client.setTcpNoDelay(true);
+                upstream.setTcpNoDelay(true);
+                threads.execute(() -> relay(client, upstream, 0));
+                threads.execute(() -> relay(upstream, client, latencyMs));
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private static void relay(Socket from, Socket to, long delayMs) {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+                out.write(buffer, 0, read);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Either side went away
+        } finally {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        threads.shutdownNow();
+    }
+}
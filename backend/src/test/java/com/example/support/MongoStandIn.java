@@ -0,0 +1,58 @@
+package com.example.support;
+
+import java.net.InetSocketAddress;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+// In-memory Mongo server on a random local port, reached through the real driver and
+// MongoTemplate, so tests exercise the same queries and updates as the application
+public final class MongoStandIn implements AutoCloseable {
+
+    private final MongoServer server;
+    private final MongoClient client;
+    private final MongoTemplate template;
+    private com.mongodb.reactivestreams.client.MongoClient reactiveClient;
+
+    public MongoStandIn() {
+        this.server = new MongoServer(new MemoryBackend());
+        this.client = MongoClients.create(server.bindAndGetConnectionString());
+        this.template = new MongoTemplate(client, "test");
+    }
+
+    public MongoTemplate template() {
+        return template;
+    }
+
+    public InetSocketAddress address() {
+        return server.getLocalAddress();
+    }
+
+    // Another database on the same server
+    public MongoTemplate template(String database) {
+        return new MongoTemplate(client, database);
+    }
+
+    // Same database through the reactive driver
+    public synchronized ReactiveMongoTemplate reactiveTemplate() {
+        if (reactiveClient == null) {
+            reactiveClient = com.mongodb.reactivestreams.client.MongoClients.create(server.getConnectionString());
+        }
+        return new ReactiveMongoTemplate(reactiveClient, "test");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reactiveClient != null) {
+            reactiveClient.close();
+        }
+        client.close();
+        server.shutdownNow();
+    }
+}